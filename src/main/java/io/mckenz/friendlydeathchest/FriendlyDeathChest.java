@@ -5,7 +5,10 @@ import io.mckenz.friendlydeathchest.config.ConfigManager;
 import io.mckenz.friendlydeathchest.listeners.BlockListener;
 import io.mckenz.friendlydeathchest.listeners.InventoryListener;
 import io.mckenz.friendlydeathchest.listeners.PlayerDeathListener;
+import io.mckenz.friendlydeathchest.listeners.PluginListener;
+import io.mckenz.friendlydeathchest.listeners.WorldListener;
 import io.mckenz.friendlydeathchest.service.ChestManager;
+import io.mckenz.friendlydeathchest.service.DeathChestPipeline;
 import io.mckenz.friendlydeathchest.service.HologramManager;
 import io.mckenz.friendlydeathchest.service.LocationFinder;
 import io.mckenz.friendlydeathchest.utils.UpdateChecker;
@@ -22,6 +25,7 @@ public class FriendlyDeathChest extends JavaPlugin {
     private LocationFinder locationFinder;
     private ChestManager chestManager;
     private HologramManager hologramManager;
+    private DeathChestPipeline deathChestPipeline;
     private UpdateChecker updateChecker;
 
     @Override
@@ -38,8 +42,8 @@ public class FriendlyDeathChest extends JavaPlugin {
         }
 
         // Initialize services in correct order
-        locationFinder = new LocationFinder(configManager, null); // Temporarily pass null for ChestManager
-        chestManager = new ChestManager(this, configManager, locationFinder);
+        locationFinder = new LocationFinder(this, configManager, null); // Temporarily pass null for ChestManager
+        chestManager = new ChestManager(this, configManager);
         // Update LocationFinder with ChestManager reference
         ((LocationFinder)locationFinder).setChestManager(chestManager);
         
@@ -79,6 +83,10 @@ public class FriendlyDeathChest extends JavaPlugin {
     @Override
     public void onDisable() {
         // Clean up resources
+        if (deathChestPipeline != null) {
+            deathChestPipeline.releasePendingDeaths();
+        }
+        
         if (chestManager != null) {
             chestManager.saveChests();
             chestManager.cancelExpirationTask();
@@ -101,7 +109,8 @@ public class FriendlyDeathChest extends JavaPlugin {
         
         // Register death listener if chest creation is enabled
         if (configManager.shouldCreateChest()) {
-            PlayerDeathListener deathListener = new PlayerDeathListener(this, configManager, locationFinder, chestManager, hologramManager);
+            deathChestPipeline = new DeathChestPipeline(this, configManager, locationFinder, chestManager, hologramManager);
+            PlayerDeathListener deathListener = new PlayerDeathListener(deathChestPipeline);
             pm.registerEvents(deathListener, this);
             getLogger().info("Death chest creation enabled.");
         }
@@ -116,6 +125,14 @@ public class FriendlyDeathChest extends JavaPlugin {
             pm.registerEvents(blockListener, this);
             getLogger().info("Death chest protection enabled.");
         }
+        
+        // Register world listener to load chests with their chunks and save them with the worlds
+        WorldListener worldListener = new WorldListener(chestManager);
+        pm.registerEvents(worldListener, this);
+        
+        // Register plugin listener to follow protection plugins being enabled and disabled
+        PluginListener pluginListener = new PluginListener(chestManager.getProtectionManager());
+        pm.registerEvents(pluginListener, this);
     }
     
     /**
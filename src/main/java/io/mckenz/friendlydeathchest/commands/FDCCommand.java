@@ -2,11 +2,14 @@ package io.mckenz.friendlydeathchest.commands;
 
 import io.mckenz.friendlydeathchest.FriendlyDeathChest;
 import io.mckenz.friendlydeathchest.config.ConfigManager;
+import io.mckenz.friendlydeathchest.protection.ProtectionManager;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -69,6 +72,24 @@ public class FDCCommand implements CommandExecutor, TabCompleter {
                 sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
                     "&7[&cFriendlyDeathChest&7] &aConfiguration reloaded."));
                 break;
+            case "protection":
+                if (!sender.hasPermission("friendlydeathchest.admin")) {
+                    sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
+                        "&7[&cFriendlyDeathChest&7] &cYou don't have permission to use this command."));
+                    return true;
+                }
+                
+                showProtection(sender);
+                break;
+            case "chests":
+                if (!sender.hasPermission("friendlydeathchest.admin")) {
+                    sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
+                        "&7[&cFriendlyDeathChest&7] &cYou don't have permission to use this command."));
+                    return true;
+                }
+                
+                showChests(sender, subArgs);
+                break;
             case "update":
                 return updateCommand.onCommand(sender, command, label, subArgs);
             default:
@@ -100,9 +121,60 @@ public class FDCCommand implements CommandExecutor, TabCompleter {
             "&e/fdc help &7- &fShow this help message"));
         sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
             "&e/fdc reload &7- &fReload the configuration"));
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
+            "&e/fdc protection &7- &fShow protection plugin hooks and timings"));
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
+            "&e/fdc chests [player] &7- &fList a player's death chests"));
         sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
             "&e/fdc update check &7- &fCheck for updates"));
     }
+    
+    /**
+     * Show the protection plugin hooks and how long their checks take
+     * 
+     * @param sender The command sender
+     */
+    private void showProtection(CommandSender sender) {
+        ProtectionManager protectionManager = plugin.getChestManager().getProtectionManager();
+        List<String> active = protectionManager.getActiveProviders();
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
+            "&7[&cFriendlyDeathChest&7] &fProtection hooks: &e" + (active.isEmpty() ? "none" : String.join(", ", active))));
+        
+        for (ProtectionManager.ProviderStats stats : protectionManager.getStats()) {
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format(
+                "&e%s &7- &f%d checks, avg %.3fms, max %.3fms, total %.1fms",
+                stats.getName(), stats.getCalls(), stats.getAverageNanos() / 1e6,
+                stats.getMaxNanos() / 1e6, stats.getTotalNanos() / 1e6)));
+        }
+    }
+
+    /**
+     * List the death chests of an online player, or of the sender
+     * 
+     * @param sender The command sender
+     * @param args The player name, or nothing for the sender
+     */
+    private void showChests(CommandSender sender, String[] args) {
+        Player target;
+        if (args.length > 0) {
+            target = plugin.getServer().getPlayerExact(args[0]);
+        } else {
+            target = sender instanceof Player player ? player : null;
+        }
+        if (target == null) {
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
+                "&7[&cFriendlyDeathChest&7] &cUsage: &e/fdc chests <online player>"));
+            return;
+        }
+        
+        List<Location> chests = plugin.getChestManager().getChestLocations(target.getUniqueId());
+        sender.sendMessage(ChatColor.translateAlternateColorCodes('&', 
+            "&7[&cFriendlyDeathChest&7] &f" + target.getName() + " has &e" + chests.size() + " &fdeath chests"));
+        for (Location chest : chests) {
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', String.format(
+                "&e%s &7- &f%d, %d, %d", chest.getWorld().getName(), chest.getBlockX(), chest.getBlockY(), chest.getBlockZ())));
+        }
+    }
 
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
@@ -113,7 +185,7 @@ public class FDCCommand implements CommandExecutor, TabCompleter {
         }
         
         if (args.length == 1) {
-            List<String> subCommands = Arrays.asList("help", "reload", "update");
+            List<String> subCommands = Arrays.asList("help", "reload", "protection", "chests", "update");
             String arg = args[0].toLowerCase();
             
             completions = subCommands.stream()
@@ -4,9 +4,6 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.Material;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * Manages configuration for the FriendlyDeathChest plugin
  */
@@ -21,6 +18,15 @@ public class ConfigManager {
     private int chestLifetime;
     private String invalidLocationBehavior;
     private int maxSearchRadius;
+    private String locationSearchMode;
+    private int columnSearchLimit;
+    private long locationSearchTickBudget;
+    private int protectionCacheSeconds;
+    private String placementStrategy;
+    private double placementDistanceWeight;
+    private double placementHazardWeight;
+    private double placementReachabilityWeight;
+    private double placementLightWeight;
     private int searchRadius;
     private boolean protectChest;
     private boolean namedChest;
@@ -41,10 +47,11 @@ public class ConfigManager {
     // Item handling settings
     private String overflowBehavior;
     private boolean storeExperience;
-    private Set<String> excludedItems;
+    private ItemRules itemRules;
     
     // Messages
     private String messageNoValidLocation;
+    private String messageSearching;
     private String deathMessage;
     private String collectionMessage;
     private String messageSignProtected;
@@ -54,6 +61,11 @@ public class ConfigManager {
     
     // Advanced settings
     private boolean persistentStorage;
+    private String storageType;
+    private int journalCompactionThreshold;
+    private int storageShutdownTimeout;
+    private int autosaveInterval;
+    private long expiryTickBudget;
     private boolean respectProtectionPlugins;
     private boolean debug;
     
@@ -99,6 +111,15 @@ public class ConfigManager {
         chestLifetime = config.getInt("chest-lifetime", 15);
         invalidLocationBehavior = config.getString("invalid-location-behavior", "CLOSEST_VALID");
         maxSearchRadius = config.getInt("max-search-radius", 10);
+        locationSearchMode = config.getString("location-search-mode", "SYNC").toUpperCase();
+        columnSearchLimit = config.getInt("column-search-limit", 512);
+        placementStrategy = config.getString("placement-strategy", "NEAREST").toUpperCase();
+        placementDistanceWeight = config.getDouble("placement-weights.distance", 1.0);
+        placementHazardWeight = config.getDouble("placement-weights.hazard", 10.0);
+        placementReachabilityWeight = config.getDouble("placement-weights.reachability", 20.0);
+        placementLightWeight = config.getDouble("placement-weights.light", 2.0);
+        locationSearchTickBudget = config.getLong("location-search-tick-budget", 1000000L);
+        protectionCacheSeconds = config.getInt("protection-cache-seconds", 5);
         protectChest = config.getBoolean("protect-chest", true);
         namedChest = config.getBoolean("named-chest", true);
         
@@ -128,7 +149,7 @@ public class ConfigManager {
         // Load item handling settings
         overflowBehavior = config.getString("overflow-behavior", "DOUBLE_CHEST");
         storeExperience = config.getBoolean("store-experience", true);
-        excludedItems = new HashSet<>(config.getStringList("excluded-items"));
+        itemRules = ItemRules.compile(config.getStringList("excluded-items"), config.getMapList("item-rules"), plugin.getLogger());
         
         // Load search radius
         searchRadius = config.getInt("search-radius", 1);
@@ -140,6 +161,8 @@ public class ConfigManager {
             "&c[FriendlyDeathChest] &fYour items have been stored in a chest at &e{location}");
         collectionMessage = config.getString("collection-message", 
             "&aYou have collected all items from your death chest!");
+        messageSearching = config.getString("messages.searching",
+            "&7[FriendlyDeathChest] Searching for a place for your death chest...");
         messageSignProtected = config.getString("messages.sign-protected",
             "&c[FriendlyDeathChest] Cannot remove sign while chest contains items!");
         messageNoPermission = "&c[FriendlyDeathChest] This is not your death chest!";
@@ -149,6 +172,11 @@ public class ConfigManager {
         
         // Load advanced settings
         persistentStorage = config.getBoolean("persistent-storage", true);
+        storageType = config.getString("storage-type", "FILE").toUpperCase();
+        journalCompactionThreshold = Math.max(1, config.getInt("journal-compaction-threshold", 500));
+        storageShutdownTimeout = Math.max(1, config.getInt("storage-shutdown-timeout", 10));
+        autosaveInterval = config.getInt("autosave-interval", 60);
+        expiryTickBudget = Math.max(0, config.getLong("expiry-tick-budget", 2000000));
         respectProtectionPlugins = config.getBoolean("respect-protection-plugins", true);
         debug = config.getBoolean("debug", false);
         
@@ -187,6 +215,87 @@ public class ConfigManager {
         return maxSearchRadius;
     }
     
+    /**
+     * Gets how the chest location search runs
+     * 
+     * @return The search mode (SYNC or ASYNC)
+     */
+    public String getLocationSearchMode() {
+        return locationSearchMode;
+    }
+    
+    /**
+     * Gets the maximum number of columns the surface search checks
+     * 
+     * @return The column limit
+     */
+    public int getColumnSearchLimit() {
+        return columnSearchLimit;
+    }
+    
+    /**
+     * Gets how ASYNC searches choose between valid chest locations
+     * 
+     * @return The strategy (NEAREST or SCORED)
+     */
+    public String getPlacementStrategy() {
+        return placementStrategy;
+    }
+    
+    /**
+     * Gets the score added per block of distance from the death location
+     * 
+     * @return The distance weight
+     */
+    public double getPlacementDistanceWeight() {
+        return placementDistanceWeight;
+    }
+    
+    /**
+     * Gets the score added per hazardous block next to a chest location
+     * 
+     * @return The hazard weight
+     */
+    public double getPlacementHazardWeight() {
+        return placementHazardWeight;
+    }
+    
+    /**
+     * Gets the score added when a chest location could only be reached by digging
+     * 
+     * @return The reachability weight
+     */
+    public double getPlacementReachabilityWeight() {
+        return placementReachabilityWeight;
+    }
+    
+    /**
+     * Gets the score added for a chest location in full darkness, scaled down with light
+     * 
+     * @return The light weight
+     */
+    public double getPlacementLightWeight() {
+        return placementLightWeight;
+    }
+    
+    /**
+     * Gets how much time each tick may spend on SYNC chest location searches
+     * 
+     * @return The budget in nanoseconds
+     */
+    public long getLocationSearchTickBudget() {
+        return locationSearchTickBudget;
+    }
+    
+    /**
+     * Gets how long protection decisions are reused across chest location searches
+     * 
+     * @return The cache lifetime in seconds, 0 to only reuse them within one search
+     */
+    public int getProtectionCacheSeconds() {
+        return protectionCacheSeconds;
+    }
+    
     public int getSearchRadius() {
         return searchRadius;
     }
@@ -239,8 +348,13 @@ public class ConfigManager {
         return storeExperience;
     }
     
-    public Set<String> getExcludedItems() {
-        return excludedItems;
+    /**
+     * Gets the compiled excluded-items and item-rules
+     * 
+     * @return The item rules
+     */
+    public ItemRules getItemRules() {
+        return itemRules;
     }
     
     public String getMessageNoChest() {
@@ -280,6 +394,51 @@ public class ConfigManager {
         return persistentStorage;
     }
     
+    /**
+     * Gets the storage backend for death chests
+     * 
+     * @return The storage type (FILE or SQLITE)
+     */
+    public String getStorageType() {
+        return storageType;
+    }
+    
+    /**
+     * Gets the number of journal records after which the journal is compacted into a snapshot
+     * 
+     * @return The journal compaction threshold
+     */
+    public int getJournalCompactionThreshold() {
+        return journalCompactionThreshold;
+    }
+    
+    /**
+     * Gets how long to wait for pending storage writes when the server shuts down
+     * 
+     * @return The shutdown timeout in seconds
+     */
+    public int getStorageShutdownTimeout() {
+        return storageShutdownTimeout;
+    }
+    
+    /**
+     * Gets how often changed chests are made durable, in addition to every world save
+     * 
+     * @return The autosave interval in seconds, or 0 to only save with the worlds
+     */
+    public int getAutosaveInterval() {
+        return autosaveInterval;
+    }
+    
+    /**
+     * Gets how much time per tick may be spent removing expired chests
+     * 
+     * @return The budget in nanoseconds; at least one chest is always removed per tick
+     */
+    public long getExpiryTickBudget() {
+        return expiryTickBudget;
+    }
+    
     public boolean shouldRespectProtectionPlugins() {
         return respectProtectionPlugins;
     }
@@ -342,6 +501,24 @@ public class ConfigManager {
         return !messageNoValidLocation.isEmpty();
     }
     
+    /**
+     * Gets the message sent when a chest location search continues over several ticks
+     * 
+     * @return The searching message
+     */
+    public String getSearchingMessage() {
+        return messageSearching;
+    }
+    
+    /**
+     * Checks if a searching message should be sent
+     * 
+     * @return true if the message should be sent
+     */
+    public boolean sendSearchingMessage() {
+        return !messageSearching.isEmpty();
+    }
+    
     /**
      * Gets the chest creation message
      * 
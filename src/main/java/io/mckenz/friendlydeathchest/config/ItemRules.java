@@ -0,0 +1,255 @@
+package io.mckenz.friendlydeathchest.config;
+
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Registry;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.EnchantmentStorageMeta;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Decides where each dropped item goes, compiled once from excluded-items and item-rules
+ * when the configuration is loaded.
+ * <p>
+ * Each rule matches a set of materials, held as a bitset indexed by material ordinal, and
+ * optionally an enchantment, a custom model data value or a persistent data key. The first
+ * matching rule decides the item's route. A bitset of every material named by any rule lets
+ * most items skip the rules entirely. Enchantments are checked on the item itself, and the
+ * item meta, which Bukkit copies on every read, is only read for materials that have custom
+ * model data or persistent data rules, and for enchanted books, whose enchantments are
+ * stored in the meta.
+ */
+public final class ItemRules {
+    /**
+     * Where a dropped item goes
+     */
+    public enum Route {
+        /** Stored in the death chest */
+        CHEST,
+        /** Dropped at the death location as usual */
+        DROP,
+        /** Removed */
+        DESTROY,
+        /** Given back to the player on respawn */
+        KEEP
+    }
+
+    private static final int MATERIAL_WORDS = (Material.values().length + 63) >>> 6;
+
+    private final Rule[] rules;
+    // Materials matched by at least one rule
+    private final long[] ruled = new long[MATERIAL_WORDS];
+
+    private ItemRules(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+        for (Rule rule : this.rules) {
+            for (int i = 0; i < MATERIAL_WORDS; i++) {
+                ruled[i] |= rule.materials[i];
+            }
+        }
+    }
+
+    /**
+     * Compiles the item rules. Invalid entries are logged and skipped.
+     *
+     * @param excludedItems The excluded-items list; each item is dropped
+     * @param ruleMaps The item-rules list
+     * @param logger The logger for invalid entries
+     * @return The compiled rules
+     */
+    static ItemRules compile(List<String> excludedItems, List<Map<?, ?>> ruleMaps, Logger logger) {
+        List<Rule> rules = new ArrayList<>();
+
+        if (!excludedItems.isEmpty()) {
+            long[] materials = new long[MATERIAL_WORDS];
+            for (String name : excludedItems) {
+                Material material = Material.matchMaterial(name);
+                if (material == null) {
+                    logger.warning("Unknown material in excluded-items: " + name);
+                    continue;
+                }
+                set(materials, material);
+            }
+            rules.add(new Rule(materials, null, 0, false, null, Route.DROP));
+        }
+
+        for (Map<?, ?> map : ruleMaps) {
+            try {
+                rules.add(compileRule(map));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping invalid item rule " + map + ": " + e.getMessage());
+            }
+        }
+        return new ItemRules(rules);
+    }
+
+    private static Rule compileRule(Map<?, ?> map) {
+        Object action = map.get("action");
+        if (action == null) {
+            throw new IllegalArgumentException("missing action");
+        }
+        Route route = Route.valueOf(action.toString().toUpperCase());
+
+        long[] materials = new long[MATERIAL_WORDS];
+        Object items = map.get("items");
+        if (items instanceof List<?> names && !names.isEmpty()) {
+            for (Object name : names) {
+                Material material = Material.matchMaterial(name.toString());
+                if (material == null) {
+                    throw new IllegalArgumentException("unknown material " + name);
+                }
+                set(materials, material);
+            }
+        } else {
+            // No item list: the rule applies to every material
+            for (Material material : Material.values()) {
+                set(materials, material);
+            }
+        }
+
+        Enchantment enchantment = null;
+        Object enchantmentName = map.get("enchantment");
+        if (enchantmentName != null) {
+            NamespacedKey key = NamespacedKey.fromString(enchantmentName.toString().toLowerCase());
+            enchantment = key != null ? Registry.ENCHANTMENT.get(key) : null;
+            if (enchantment == null) {
+                throw new IllegalArgumentException("unknown enchantment " + enchantmentName);
+            }
+        }
+
+        int customModelData = 0;
+        boolean matchCustomModelData = false;
+        Object modelData = map.get("custom-model-data");
+        if (modelData != null) {
+            customModelData = Integer.parseInt(modelData.toString());
+            matchCustomModelData = true;
+        }
+
+        NamespacedKey dataKey = null;
+        Object dataKeyName = map.get("pdc-key");
+        if (dataKeyName != null) {
+            dataKey = NamespacedKey.fromString(dataKeyName.toString());
+            if (dataKey == null) {
+                throw new IllegalArgumentException("invalid pdc-key " + dataKeyName);
+            }
+        }
+
+        return new Rule(materials, enchantment, customModelData, matchCustomModelData, dataKey, route);
+    }
+
+    /**
+     * Finds where an item goes. Does not allocate unless a custom model data or persistent
+     * data rule applies to the item's material, or an enchantment rule to an enchanted book.
+     *
+     * @param item The item
+     * @return The route of the first matching rule, CHEST if none matches
+     */
+    public Route route(ItemStack item) {
+        Material type = item.getType();
+        if (!isSet(ruled, type)) {
+            return Route.CHEST;
+        }
+
+        ItemMeta meta = null;
+        boolean metaRead = false;
+        for (Rule rule : rules) {
+            if (!isSet(rule.materials, type)) {
+                continue;
+            }
+            if (rule.enchantment != null && !item.containsEnchantment(rule.enchantment)) {
+                // Enchanted books keep their enchantments in the meta instead
+                if (type != Material.ENCHANTED_BOOK) {
+                    continue;
+                }
+                if (!metaRead) {
+                    meta = item.hasItemMeta() ? item.getItemMeta() : null;
+                    metaRead = true;
+                }
+                if (!(meta instanceof EnchantmentStorageMeta storage) || !storage.hasStoredEnchant(rule.enchantment)) {
+                    continue;
+                }
+            }
+            if (rule.needsMeta()) {
+                if (!metaRead) {
+                    meta = item.hasItemMeta() ? item.getItemMeta() : null;
+                    metaRead = true;
+                }
+                if (meta == null || !rule.matchesMeta(meta)) {
+                    continue;
+                }
+            }
+            return rule.route;
+        }
+        return Route.CHEST;
+    }
+
+    /**
+     * Checks whether any rule is configured
+     *
+     * @return true if there are no rules
+     */
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    private static void set(long[] bits, Material material) {
+        int ordinal = material.ordinal();
+        bits[ordinal >>> 6] |= 1L << ordinal;
+    }
+
+    private static boolean isSet(long[] bits, Material material) {
+        int ordinal = material.ordinal();
+        return (bits[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * One compiled rule
+     */
+    private static final class Rule {
+        private final long[] materials;
+        private final Enchantment enchantment;
+        private final int customModelData;
+        private final boolean matchCustomModelData;
+        private final NamespacedKey dataKey;
+        private final Route route;
+
+        private Rule(long[] materials, Enchantment enchantment, int customModelData, boolean matchCustomModelData,
+                     NamespacedKey dataKey, Route route) {
+            this.materials = materials;
+            this.enchantment = enchantment;
+            this.customModelData = customModelData;
+            this.matchCustomModelData = matchCustomModelData;
+            this.dataKey = dataKey;
+            this.route = route;
+        }
+
+        private boolean needsMeta() {
+            return matchCustomModelData || dataKey != null;
+        }
+
+        private boolean matchesMeta(ItemMeta meta) {
+            if (matchCustomModelData && !hasCustomModelData(meta)) {
+                return false;
+            }
+            return dataKey == null || meta.getPersistentDataContainer().has(dataKey);
+        }
+
+        /**
+         * Checks the custom model data component. A whole number custom model data value is
+         * stored as the component's first float.
+         */
+        private boolean hasCustomModelData(ItemMeta meta) {
+            if (!meta.hasCustomModelDataComponent()) {
+                return false;
+            }
+            List<Float> floats = meta.getCustomModelDataComponent().getFloats();
+            return !floats.isEmpty() && floats.get(0) == customModelData;
+        }
+    }
+}
@@ -47,7 +47,7 @@ public class BlockListener implements Listener {
         // Handle chest break
         if (block.getType() == Material.CHEST) {
             // Check if this is a death chest
-            ChestData chestData = chestManager.getChestData(block.getLocation());
+            ChestData chestData = chestManager.getChestData(block);
             if (chestData != null && config.shouldProtectChest()) {
                 // Check if player has permission to break this chest
                 Player player = event.getPlayer();
@@ -90,7 +90,7 @@ public class BlockListener implements Listener {
             
             if (chestBlock.getType() == Material.CHEST) {
                 // Check if this is a death chest
-                ChestData chestData = chestManager.getChestData(chestBlock.getLocation());
+                ChestData chestData = chestManager.getChestData(chestBlock);
                 if (chestData != null) {
                     Chest chest = (Chest) chestBlock.getState();
                     if (!chest.getInventory().isEmpty()) {
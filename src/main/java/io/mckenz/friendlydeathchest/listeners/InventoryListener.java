@@ -53,7 +53,7 @@ public class InventoryListener implements Listener {
         Block chestBlock = chest.getBlock();
         
         // Check if this is a death chest
-        ChestData chestData = chestManager.getChestData(chestBlock.getLocation());
+        ChestData chestData = chestManager.getChestData(chestBlock);
         if (chestData == null) {
             return;
         }
@@ -93,7 +93,7 @@ public class InventoryListener implements Listener {
         Block chestBlock = chest.getBlock();
         
         // Check if this is a death chest
-        if (!chestManager.isDeathChest(chestBlock.getLocation())) {
+        if (!chestManager.isDeathChest(chestBlock)) {
             return;
         }
         
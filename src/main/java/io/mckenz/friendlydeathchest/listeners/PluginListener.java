@@ -0,0 +1,45 @@
+package io.mckenz.friendlydeathchest.listeners;
+
+import io.mckenz.friendlydeathchest.protection.ProtectionManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+
+/**
+ * Listener for other plugins being enabled or disabled, so protection hooks follow them
+ */
+public class PluginListener implements Listener {
+    private final ProtectionManager protectionManager;
+
+    /**
+     * Creates a new PluginListener
+     *
+     * @param protectionManager The protection manager
+     */
+    public PluginListener(ProtectionManager protectionManager) {
+        this.protectionManager = protectionManager;
+    }
+
+    /**
+     * Hooks into a protection plugin that was enabled after this one
+     *
+     * @param event The plugin enable event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        protectionManager.resolveProviders(null);
+    }
+
+    /**
+     * Drops the hook into a protection plugin that is being disabled
+     *
+     * @param event The plugin disable event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        // The plugin still reports itself as enabled while this event runs
+        protectionManager.resolveProviders(event.getPlugin());
+    }
+}
@@ -0,0 +1,56 @@
+package io.mckenz.friendlydeathchest.listeners;
+
+import io.mckenz.friendlydeathchest.service.ChestManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+
+/**
+ * Listener for world and chunk lifecycle events that affect death chests
+ */
+public class WorldListener implements Listener {
+    private final ChestManager chestManager;
+
+    /**
+     * Creates a new WorldListener
+     *
+     * @param chestManager The chest manager service
+     */
+    public WorldListener(ChestManager chestManager) {
+        this.chestManager = chestManager;
+    }
+
+    /**
+     * Saves changed death chests together with the world, so chest storage on disk
+     * matches the blocks the world just saved
+     *
+     * @param event The world save event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldSave(WorldSaveEvent event) {
+        chestManager.autosave();
+    }
+
+    /**
+     * Registers stored death chests once their chunk is loaded
+     *
+     * @param event The chunk load event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        chestManager.hydrateChunk(event.getChunk());
+    }
+
+    /**
+     * Drops holograms of death chests in an unloading chunk
+     *
+     * @param event The chunk unload event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        chestManager.releaseChunk(event.getChunk());
+    }
+}
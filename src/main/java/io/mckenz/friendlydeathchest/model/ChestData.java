@@ -8,7 +8,7 @@ import java.util.UUID;
 public class ChestData {
     private final UUID ownerUUID;
     private final long creationTime;
-    private final int experience;
+    private int experience;
     private long expiryTime;
     private boolean warningShown;
     
@@ -45,6 +45,15 @@ public class ChestData {
         return experience;
     }
     
+    /**
+     * Sets the amount of experience stored in the chest
+     * 
+     * @param experience The new amount of experience
+     */
+    public void setExperience(int experience) {
+        this.experience = experience;
+    }
+    
     /**
      * Gets the time when the chest will expire
      * 
@@ -0,0 +1,75 @@
+package io.mckenz.friendlydeathchest.model;
+
+import java.util.UUID;
+
+/**
+ * Immutable persisted form of a death chest, safe to hand to storage threads
+ */
+public final class StoredChest {
+    private final String worldName;
+    private final int x;
+    private final int y;
+    private final int z;
+    private final UUID ownerUUID;
+    private final int experience;
+    private final long expiryTime;
+
+    /**
+     * Creates a new stored chest record
+     *
+     * @param worldName The name of the world the chest is in
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @param ownerUUID The UUID of the player who died
+     * @param experience The amount of experience stored in the chest
+     * @param expiryTime The time when the chest will expire (0 for no expiry)
+     */
+    public StoredChest(String worldName, int x, int y, int z, UUID ownerUUID, int experience, long expiryTime) {
+        this.worldName = worldName;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.ownerUUID = ownerUUID;
+        this.experience = experience;
+        this.expiryTime = expiryTime;
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public UUID getOwnerUUID() {
+        return ownerUUID;
+    }
+
+    public int getExperience() {
+        return experience;
+    }
+
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    /**
+     * Creates a copy of this record with a different amount of stored experience
+     *
+     * @param experience The new amount of experience
+     * @return The updated record
+     */
+    public StoredChest withExperience(int experience) {
+        return new StoredChest(worldName, x, y, z, ownerUUID, experience, expiryTime);
+    }
+}
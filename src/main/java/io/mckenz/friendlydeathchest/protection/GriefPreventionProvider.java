@@ -0,0 +1,75 @@
+package io.mckenz.friendlydeathchest.protection;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * GriefPrevention adapter, resolved reflectively so GriefPrevention stays an optional dependency
+ */
+public class GriefPreventionProvider implements ProtectionProvider {
+    private final MethodHandle allowBuild;
+
+    private GriefPreventionProvider(MethodHandle allowBuild) {
+        this.allowBuild = allowBuild;
+    }
+
+    /**
+     * Resolves GriefPrevention's build check, bound to its current data store
+     *
+     * @param plugin The GriefPrevention plugin
+     * @return The provider
+     * @throws ReflectiveOperationException If GriefPrevention's API does not match
+     */
+    public static GriefPreventionProvider create(Plugin plugin) throws ReflectiveOperationException {
+        ClassLoader loader = plugin.getClass().getClassLoader();
+        Class<?> pluginClass = Class.forName("me.ryanhamshire.GriefPrevention.GriefPrevention", true, loader);
+        Class<?> dataStoreClass = Class.forName("me.ryanhamshire.GriefPrevention.DataStore", true, loader);
+
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        Object dataStore;
+        try {
+            dataStore = lookup.findStatic(pluginClass, "getDataStore", MethodType.methodType(dataStoreClass)).invoke();
+        } catch (ReflectiveOperationException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ReflectiveOperationException("GriefPrevention data store is unavailable", e);
+        }
+
+        MethodHandle allowBuild = lookup
+            .findVirtual(dataStoreClass, "allowBuild",
+                MethodType.methodType(String.class, Player.class, Location.class, Material.class))
+            .bindTo(dataStore);
+        return new GriefPreventionProvider(allowBuild);
+    }
+
+    @Override
+    public String getName() {
+        return "GriefPrevention";
+    }
+
+    @Override
+    public List<String> getChangeEvents() {
+        // Not every GriefPrevention version has all of these; missing ones are skipped
+        return Arrays.asList(
+            "me.ryanhamshire.GriefPrevention.events.ClaimCreatedEvent",
+            "me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent",
+            "me.ryanhamshire.GriefPrevention.events.ClaimResizeEvent",
+            "me.ryanhamshire.GriefPrevention.events.ClaimModifiedEvent",
+            "me.ryanhamshire.GriefPrevention.events.ClaimChangeEvent",
+            "me.ryanhamshire.GriefPrevention.events.TrustChangedEvent");
+    }
+
+    @Override
+    public boolean canBuild(Player player, Location location) throws Throwable {
+        // GriefPrevention returns the reason building is denied, or null if it is allowed
+        return (String) allowBuild.invokeExact(player, location, Material.CHEST) == null;
+    }
+}
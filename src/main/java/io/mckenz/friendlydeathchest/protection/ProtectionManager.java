@@ -0,0 +1,334 @@
+package io.mckenz.friendlydeathchest.protection;
+
+import io.mckenz.friendlydeathchest.config.ConfigManager;
+import io.mckenz.friendlydeathchest.utils.BlockPos;
+import io.mckenz.friendlydeathchest.utils.LongObjectHashMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Checks death chest placements against every enabled protection plugin.
+ * <p>
+ * Providers are created once per plugin when it is enabled, not on every check, and are
+ * resolved again whenever a plugin is enabled or disabled. Other claim plugins can be
+ * supported with {@link #registerProvider(String, ProtectionProvider.Factory)}. Each
+ * provider's calls are timed so slow ones can be spotted with {@code /fdc protection}.
+ * <p>
+ * Whether a whole chunk section (16x16x16 blocks) is denied to a player can also be cached
+ * for protection-cache-seconds, since claims and regions usually cover whole areas. A section
+ * only counts as denied when building is denied at every corner of it, so a claim border
+ * running through it never hides its free part. Sections are small enough that regions
+ * limited in height still cover most of the ones they reach. The cache is dropped when a provider reports
+ * a claim change.
+ */
+public class ProtectionManager {
+    private final JavaPlugin plugin;
+    private final ConfigManager config;
+    private final Map<String, ProtectionProvider.Factory> factories = new LinkedHashMap<>();
+    private final Map<String, ProviderStats> stats = new LinkedHashMap<>();
+    private List<ProtectionProvider> providers = new ArrayList<>();
+
+    private final Listener changeListener = new Listener() {};
+    private final Set<Class<? extends Event>> changeEvents = new HashSet<>();
+    private final Map<UUID, Map<UUID, LongObjectHashMap<CachedDecision>>> decisions = new HashMap<>();
+    private long nextPurge;
+
+    /**
+     * Creates a new ProtectionManager with the built-in WorldGuard and GriefPrevention providers
+     *
+     * @param plugin The plugin instance
+     * @param config The configuration manager
+     */
+    public ProtectionManager(JavaPlugin plugin, ConfigManager config) {
+        this.plugin = plugin;
+        this.config = config;
+        factories.put("WorldGuard", WorldGuardProvider::create);
+        factories.put("GriefPrevention", GriefPreventionProvider::create);
+        resolveProviders(null);
+    }
+
+    /**
+     * Adds support for another protection plugin
+     *
+     * @param pluginName The name of the protection plugin
+     * @param factory Creates the provider when the plugin is enabled
+     */
+    public void registerProvider(String pluginName, ProtectionProvider.Factory factory) {
+        factories.put(pluginName, factory);
+        resolveProviders(null);
+    }
+
+    /**
+     * Creates providers for every protection plugin that is currently enabled
+     *
+     * @param disabling A plugin that is being disabled and must be skipped, or null
+     */
+    public void resolveProviders(Plugin disabling) {
+        List<ProtectionProvider> resolved = new ArrayList<>();
+        for (Map.Entry<String, ProtectionProvider.Factory> entry : factories.entrySet()) {
+            Plugin target = plugin.getServer().getPluginManager().getPlugin(entry.getKey());
+            if (target == null || !target.isEnabled() || target == disabling) {
+                continue;
+            }
+
+            try {
+                ProtectionProvider provider = entry.getValue().create(target);
+                resolved.add(provider);
+                stats.computeIfAbsent(provider.getName(), ProviderStats::new);
+                listenForChanges(provider, target);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                plugin.getLogger().warning("Failed to hook into " + entry.getKey() + " protection: " + e.getMessage());
+            }
+        }
+        providers = resolved;
+        invalidate();
+    }
+
+    /**
+     * Checks whether a player is denied building everywhere in the chunk section containing
+     * a location, reusing the answer for that player and section if it was found within
+     * protection-cache-seconds. A section that is not wholly denied may still be denied in
+     * places, so its blocks must be checked with {@link #canBuild(Player, Location)}.
+     *
+     * @param player The player
+     * @param location The location
+     * @return true if building is denied at every corner of the section
+     */
+    public boolean deniesWholeSection(Player player, Location location) {
+        if (providers.isEmpty()) {
+            return false;
+        }
+        long ttl = config.getProtectionCacheSeconds() * 1000L;
+        if (ttl <= 0) {
+            return checkWholeSection(player, location);
+        }
+
+        long now = System.currentTimeMillis();
+        if (now >= nextPurge) {
+            purgeExpired(now);
+            nextPurge = now + ttl;
+        }
+
+        World world = location.getWorld();
+        long section = sectionKey(location);
+        LongObjectHashMap<CachedDecision> playerDecisions = decisions
+            .computeIfAbsent(player.getUniqueId(), id -> new HashMap<>())
+            .computeIfAbsent(world.getUID(), id -> new LongObjectHashMap<>());
+
+        CachedDecision cached = playerDecisions.get(section);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.denied;
+        }
+
+        boolean denied = checkWholeSection(player, location);
+        playerDecisions.put(section, new CachedDecision(denied, now + ttl));
+        return denied;
+    }
+
+    /**
+     * Gets the key of the chunk section containing a location
+     *
+     * @param location The location
+     * @return The packed section coordinates
+     */
+    public static long sectionKey(Location location) {
+        return BlockPos.pack(location.getBlockX() >> 4, location.getBlockY() >> 4, location.getBlockZ() >> 4);
+    }
+
+    /**
+     * Checks the eight corners of a chunk section, clamped to the world's height. Claims and
+     * cuboid regions are boxes, so one that covers every corner covers the whole section.
+     * Stops at the first corner where building is allowed, which for most sections is the first.
+     */
+    private boolean checkWholeSection(Player player, Location location) {
+        World world = location.getWorld();
+        int minX = location.getBlockX() & ~15;
+        int minZ = location.getBlockZ() & ~15;
+        int minY = Math.max(location.getBlockY() & ~15, world.getMinHeight());
+        int maxY = Math.min((location.getBlockY() & ~15) + 15, world.getMaxHeight() - 1);
+        int[] heights = { minY, maxY };
+        for (int y : heights) {
+            for (int dx = 0; dx <= 15; dx += 15) {
+                for (int dz = 0; dz <= 15; dz += 15) {
+                    if (canBuild(player, new Location(world, minX + dx, y, minZ + dz))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops every cached decision
+     */
+    public void invalidate() {
+        decisions.clear();
+    }
+
+    private void purgeExpired(long now) {
+        decisions.values().removeIf(worlds -> {
+            worlds.values().removeIf(chunks -> {
+                for (long chunk : chunks.keys()) {
+                    if (chunks.get(chunk).expiresAt <= now) {
+                        chunks.remove(chunk);
+                    }
+                }
+                return chunks.isEmpty();
+            });
+            return worlds.isEmpty();
+        });
+    }
+
+    /**
+     * Registers for a provider's claim change events, loading them from its plugin so it
+     * stays an optional dependency. Events missing from the installed version are skipped.
+     */
+    private void listenForChanges(ProtectionProvider provider, Plugin target) {
+        for (String eventName : provider.getChangeEvents()) {
+            Class<? extends Event> eventClass;
+            try {
+                eventClass = Class.forName(eventName, true, target.getClass().getClassLoader()).asSubclass(Event.class);
+            } catch (ClassNotFoundException | ClassCastException e) {
+                continue;
+            }
+            // A reloaded protection plugin brings new event classes under the same names,
+            // which need listeners of their own
+            if (!changeEvents.add(eventClass)) {
+                continue;
+            }
+
+            plugin.getServer().getPluginManager().registerEvent(eventClass, changeListener, EventPriority.MONITOR,
+                (listener, event) -> {
+                    if (eventClass.isInstance(event)) {
+                        invalidate();
+                    }
+                }, plugin);
+        }
+    }
+
+    /**
+     * Checks whether a player may build at a location according to every provider.
+     * A provider that fails is logged and does not block placement.
+     *
+     * @param player The player
+     * @param location The location
+     * @return true if no provider denies building
+     */
+    public boolean canBuild(Player player, Location location) {
+        for (ProtectionProvider provider : providers) {
+            ProviderStats providerStats = stats.get(provider.getName());
+            long startTime = System.nanoTime();
+            boolean allowed;
+            try {
+                allowed = provider.canBuild(player, location);
+            } catch (Throwable e) {
+                plugin.getLogger().warning("Failed to check " + provider.getName() + " protection: " + e.getMessage());
+                allowed = true;
+            } finally {
+                providerStats.record(System.nanoTime() - startTime);
+            }
+
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the names of the providers currently in use
+     *
+     * @return The provider names
+     */
+    public List<String> getActiveProviders() {
+        List<String> names = new ArrayList<>();
+        for (ProtectionProvider provider : providers) {
+            names.add(provider.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Gets the timing counters of every provider used since startup
+     *
+     * @return The counters
+     */
+    public Collection<ProviderStats> getStats() {
+        return stats.values();
+    }
+
+    /**
+     * A cached protection decision and when it stops being trusted
+     */
+    private static final class CachedDecision {
+        private final boolean denied;
+        private final long expiresAt;
+
+        private CachedDecision(boolean denied, long expiresAt) {
+            this.denied = denied;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Call count and timings of one provider
+     */
+    public static final class ProviderStats {
+        private final String name;
+        private long calls;
+        private long totalNanos;
+        private long maxNanos;
+
+        private ProviderStats(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos) {
+            calls++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Gets the average time per call
+         *
+         * @return The average in nanoseconds, 0 if never called
+         */
+        public long getAverageNanos() {
+            return calls == 0 ? 0 : totalNanos / calls;
+        }
+    }
+}
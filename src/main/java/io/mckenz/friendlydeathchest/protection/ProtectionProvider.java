@@ -0,0 +1,60 @@
+package io.mckenz.friendlydeathchest.protection;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adapter for a protection or claim plugin that decides whether a death chest may be placed.
+ * <p>
+ * Providers are created by {@link ProtectionManager} when their plugin is enabled, so
+ * anything expensive (class lookups, method resolution) belongs in the factory, not in
+ * {@link #canBuild(Player, Location)}, which runs for every candidate location.
+ */
+public interface ProtectionProvider {
+
+    /**
+     * Creates providers for a protection plugin
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        /**
+         * Creates a provider for an enabled plugin
+         *
+         * @param plugin The protection plugin
+         * @return The provider
+         * @throws ReflectiveOperationException If the plugin's API could not be resolved
+         */
+        ProtectionProvider create(org.bukkit.plugin.Plugin plugin) throws ReflectiveOperationException;
+    }
+
+    /**
+     * Gets the name shown in timing reports
+     *
+     * @return The provider name
+     */
+    String getName();
+
+    /**
+     * Checks whether a player may build at a location
+     *
+     * @param player The player
+     * @param location The location
+     * @return true if the chest may be placed
+     * @throws Throwable If the protection plugin fails
+     */
+    boolean canBuild(Player player, Location location) throws Throwable;
+
+    /**
+     * Gets the events the protection plugin fires when its claims or regions change.
+     * Cached protection decisions are dropped whenever one of them fires.
+     *
+     * @return Fully qualified event class names, loaded from the protection plugin
+     */
+    default List<String> getChangeEvents() {
+        return Collections.emptyList();
+    }
+}
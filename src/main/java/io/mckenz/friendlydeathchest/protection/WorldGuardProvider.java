@@ -0,0 +1,46 @@
+package io.mckenz.friendlydeathchest.protection;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * WorldGuard adapter, resolved reflectively so WorldGuard stays an optional dependency
+ */
+public class WorldGuardProvider implements ProtectionProvider {
+    private final MethodHandle canBuild;
+
+    private WorldGuardProvider(MethodHandle canBuild) {
+        this.canBuild = canBuild;
+    }
+
+    /**
+     * Resolves WorldGuard's build check, bound to the running plugin instance
+     *
+     * @param plugin The WorldGuard plugin
+     * @return The provider
+     * @throws ReflectiveOperationException If WorldGuard's API does not match
+     */
+    public static WorldGuardProvider create(Plugin plugin) throws ReflectiveOperationException {
+        Class<?> pluginClass = Class.forName("com.sk89q.worldguard.bukkit.WorldGuardPlugin", true,
+            plugin.getClass().getClassLoader());
+        MethodHandle canBuild = MethodHandles.publicLookup()
+            .findVirtual(pluginClass, "canBuild", MethodType.methodType(boolean.class, Player.class, Location.class))
+            .bindTo(plugin);
+        return new WorldGuardProvider(canBuild);
+    }
+
+    @Override
+    public String getName() {
+        return "WorldGuard";
+    }
+
+    @Override
+    public boolean canBuild(Player player, Location location) throws Throwable {
+        return (boolean) canBuild.invokeExact(player, location);
+    }
+}
@@ -0,0 +1,42 @@
+package io.mckenz.friendlydeathchest.service;
+
+import org.bukkit.HeightMap;
+import org.bukkit.Material;
+
+/**
+ * Read-only view of block types used by the chest location search, so the same search
+ * can run against the live world or against chunk snapshots off the main thread
+ */
+public interface BlockView {
+
+    /**
+     * Gets the type of a block
+     *
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return The block type, or null if the block is outside the world or its chunk is not available
+     */
+    Material getType(int x, int y, int z);
+
+    /**
+     * Gets the height of a column from one of the world's heightmaps
+     *
+     * @param x The block X coordinate
+     * @param z The block Z coordinate
+     * @param heightMap The heightmap to read
+     * @return The Y coordinate of the highest matching block, or {@link Integer#MIN_VALUE} if the
+     *         column is not available
+     */
+    int getHighestBlockY(int x, int z, HeightMap heightMap);
+
+    /**
+     * Gets the light level of a block, the brighter of sky and block light
+     *
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return The light level from 0 to 15, or -1 if the block is not available
+     */
+    int getLightLevel(int x, int y, int z);
+}
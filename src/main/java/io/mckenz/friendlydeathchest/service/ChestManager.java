@@ -2,6 +2,14 @@ package io.mckenz.friendlydeathchest.service;
 
 import io.mckenz.friendlydeathchest.config.ConfigManager;
 import io.mckenz.friendlydeathchest.model.ChestData;
+import io.mckenz.friendlydeathchest.model.StoredChest;
+import io.mckenz.friendlydeathchest.protection.ProtectionManager;
+import io.mckenz.friendlydeathchest.storage.ChestStore;
+import io.mckenz.friendlydeathchest.storage.FileChestStore;
+import io.mckenz.friendlydeathchest.storage.PersistenceWorker;
+import io.mckenz.friendlydeathchest.storage.SqliteChestStore;
+import io.mckenz.friendlydeathchest.utils.BlockPos;
+import io.mckenz.friendlydeathchest.utils.LongObjectHashMap;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
@@ -11,54 +19,79 @@ import org.bukkit.block.Block;
 import org.bukkit.block.Chest;
 import static org.bukkit.block.data.type.Chest.Type;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.ItemStack;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.block.TileState;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.plugin.Plugin;
-import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.configuration.ConfigurationSection;
-import java.io.File;
-import java.io.IOException;
+import org.bukkit.scheduler.BukkitTask;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.UUID;
 import org.bukkit.block.BlockFace;
 import org.bukkit.World;
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
 
 /**
  * Manages death chest creation, tracking, and cleanup
  */
 public class ChestManager {
+    private static final long[] NO_POSITIONS = new long[0];
+    
     private final JavaPlugin plugin;
     private final ConfigManager config;
-    private final LocationFinder locationFinder;
     
-    private final Map<Location, ChestData> deathChests = new HashMap<>();
+    // Death chests per world UID, keyed by packed block position
+    private final Map<UUID, LongObjectHashMap<ChestData>> deathChests = new HashMap<>();
+    // Death chests per owner UUID, world UID and packed position, maintained alongside deathChests
+    private final Map<UUID, Map<UUID, LongObjectHashMap<ChestData>>> chestsByOwner = new HashMap<>();
+    // Packed death chest positions per world UID and chunk key, maintained alongside deathChests.
+    // Arrays are replaced, never modified, so callers may keep iterating one while chests change.
+    private final Map<UUID, LongObjectHashMap<long[]>> chestsByChunk = new HashMap<>();
     private final NamespacedKey ownerKey;
     private final NamespacedKey expiryTimeKey;
     private final NamespacedKey experienceKey;
     
-    private BukkitRunnable expiryWarningTask;
+    private final PersistenceWorker persistenceWorker;
+    private final ChestStore chestStore;
+    private final Map<Location, ChestChange> dirtyChests = new LinkedHashMap<>();
+    // Stored chests of worlds that were not loaded yet, by world name
+    private final Map<String, List<StoredChest>> pendingChests = new HashMap<>();
+    // Chunks with chests from storage whose blocks have not been checked yet, by world UID
+    private final Map<UUID, LongObjectHashMap<Boolean>> uncheckedChunks = new HashMap<>();
+    // Upcoming expiry warnings and expirations, earliest first
+    private final PriorityQueue<ChestDeadline> deadlines = new PriorityQueue<>(Comparator.comparingLong(ChestDeadline::getTime));
+    // Expired chests waiting for removal within the per-tick budget
+    private final ArrayDeque<ChestDeadline> expiryBacklog = new ArrayDeque<>();
+    // Chests that expired while their chunk was unloaded, by world UID and chunk key.
+    // They stay registered and stored until the chunk loads and they can be removed.
+    private final Map<UUID, Map<Long, List<Long>>> expiredChests = new HashMap<>();
+    
+    private BukkitTask expiryTask;
+    private BukkitTask autosaveTask;
+    private BukkitTask flushTask;
     private boolean persistentStorage;
     private boolean respectProtectionPlugins;
+    private final ProtectionManager protectionManager;
     
     /**
      * Creates a new ChestManager
      * 
      * @param plugin The plugin instance
      * @param config The configuration manager
-     * @param locationFinder The location finder service
      */
-    public ChestManager(JavaPlugin plugin, ConfigManager config, LocationFinder locationFinder) {
+    public ChestManager(JavaPlugin plugin, ConfigManager config) {
         this.plugin = plugin;
         this.config = config;
-        this.locationFinder = locationFinder;
         
         // Create namespaced keys for persistent data
         this.ownerKey = new NamespacedKey(plugin, "owner");
@@ -67,181 +100,123 @@ public class ChestManager {
         
         this.persistentStorage = config.isPersistentStorageEnabled();
         this.respectProtectionPlugins = config.shouldRespectProtectionPlugins();
+        this.protectionManager = new ProtectionManager(plugin, config);
+        this.persistenceWorker = persistentStorage ? new PersistenceWorker(plugin.getLogger()) : null;
         
         // Create plugin data folder if it doesn't exist
         if (!plugin.getDataFolder().exists()) {
             plugin.getDataFolder().mkdirs();
         }
         
+        this.chestStore = persistentStorage ? createChestStore() : null;
+        
         this.loadChests();
         
-        // Start tasks
-        if (config.getChestLifetime() > 0) {
-            startExpirationTask();
+        // Chunks that are already loaded (spawn chunks) are hydrated once the plugin is fully enabled
+        if (!uncheckedChunks.isEmpty()) {
+            plugin.getServer().getScheduler().runTask(plugin, this::hydrateLoadedChunks);
         }
-        this.startExpiryWarningTask();
+        
+        // Start tasks
+        startAutosaveTask();
+        startExpiryTask();
     }
     
     /**
-     * Creates a death chest for a player
+     * Removes a death chest when it's empty
      * 
-     * @param player The player who died
-     * @param location The death location
-     * @param items The items to store in the chest
-     * @param experiencePoints The experience points to store (0 if not storing)
-     * @return A list of items that couldn't be stored, or an empty list if all were stored
+     * @param chestBlock The chest block to remove
+     * @param player The player who emptied the chest, or null if expired
      */
-    public List<ItemStack> createDeathChest(Player player, Location location, List<ItemStack> items, int experiencePoints) {
-        // Find a suitable location for the chest
-        Location chestLocation = locationFinder.findChestLocation(location, player);
-        
-        if (chestLocation == null) {
-            // If no suitable location found, return all items
-            return new ArrayList<>(items);
+    public void removeChest(Block chestBlock, Player player) {
+        removeChest(chestBlock, player, false);
+    }
+    
+    /**
+     * Removes a death chest
+     * 
+     * @param chestBlock The chest block to remove
+     * @param player The player who emptied the chest, or null if expired
+     * @param expired true if the chest is being removed because its lifetime ran out
+     */
+    private void removeChest(Block chestBlock, Player player, boolean expired) {
+        if (chestBlock.getType() != Material.CHEST) {
+            return;
         }
         
-        Block chestBlock = chestLocation.getBlock();
-        
-        // Count total non-null items
-        int itemCount = (int) items.stream().filter(item -> item != null && item.getType() != Material.AIR).count();
-        
-        // Determine if we need a double chest (27 slots in single, 54 in double)
-        boolean needsDoubleChest = itemCount > 27 && "DOUBLE_CHEST".equalsIgnoreCase(config.getOverflowBehavior());
-        
-        // Place the chest
-        chestBlock.setType(Material.CHEST);
+        Location chestLoc = chestBlock.getLocation().add(0.5, 0.5, 0.5);
         
-        // Set up chest data
-        long expiryTime = config.getChestLifetime() > 0 ? 
-            System.currentTimeMillis() + (config.getChestLifetime() * 60 * 1000) : 0;
+        // Play disappearing effects
+        chestLoc.getWorld().spawnParticle(Particle.SMOKE, chestLoc, 30, 0.2, 0.2, 0.2, 0.05);
+        chestLoc.getWorld().spawnParticle(Particle.PORTAL, chestLoc, 20, 0.2, 0.2, 0.2, 0.5);
+        chestLoc.getWorld().playSound(chestLoc, Sound.ENTITY_ENDERMAN_TELEPORT, 0.7f, 1.2f);
         
-        // Store chest data for tracking
-        ChestData chestData = new ChestData(player.getUniqueId(), experiencePoints, expiryTime);
-        deathChests.put(chestBlock.getLocation(), chestData);
+        removeDecorations(chestBlock);
         
-        // Store owner data and experience in the chest's persistent data container
-        if (chestBlock.getState() instanceof TileState tileState) {
-            PersistentDataContainer container = tileState.getPersistentDataContainer();
-            container.set(ownerKey, PersistentDataType.STRING, player.getUniqueId().toString());
-            if (expiryTime > 0) {
-                container.set(expiryTimeKey, PersistentDataType.LONG, expiryTime);
-            }
-            if (experiencePoints > 0) {
-                container.set(experienceKey, PersistentDataType.INTEGER, experiencePoints);
-            }
-            tileState.update();
-        }
+        // Check if this is part of a double chest
+        org.bukkit.block.data.type.Chest chestData = 
+            (org.bukkit.block.data.type.Chest) chestBlock.getBlockData();
         
-        Block secondChestBlock = null;
-        if (needsDoubleChest) {
-            // Try to find an adjacent block for double chest
-            for (BlockFace face : new BlockFace[]{BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST}) {
-                Block adjacent = chestBlock.getRelative(face);
-                if (adjacent.getType() == Material.AIR && adjacent.getRelative(BlockFace.DOWN).getType().isSolid()) {
-                    secondChestBlock = adjacent;
-                    break;
-                }
-            }
+        if (chestData.getType() != Type.SINGLE) {
+            // Find the other half of the chest
+            Block otherHalf = getOtherHalfOfChest(chestBlock, chestData);
             
-            if (secondChestBlock != null) {
-                secondChestBlock.setType(Material.CHEST);
-                
-                // Connect the chests to form a double chest
-                connectChests(chestBlock, secondChestBlock);
-                
-                // Store owner data in the second chest too
-                if (secondChestBlock.getState() instanceof TileState tileState) {
-                    PersistentDataContainer container = tileState.getPersistentDataContainer();
-                    container.set(ownerKey, PersistentDataType.STRING, player.getUniqueId().toString());
-                    if (expiryTime > 0) {
-                        container.set(expiryTimeKey, PersistentDataType.LONG, expiryTime);
+            // Remove the other half if it exists and is empty
+            if (otherHalf != null && otherHalf.getType() == Material.CHEST) {
+                Chest otherChest = (Chest) otherHalf.getState();
+                if (otherChest.getInventory().isEmpty()) {
+                    otherHalf.setType(Material.AIR, false);
+                    if (removeChestData(otherHalf) != null) {
+                        markDirty(otherHalf.getLocation(), expired ? ChestChange.EXPIRED : ChestChange.REMOVED);
                     }
-                    tileState.update();
                 }
-                
-                // Track the second chest too
-                deathChests.put(secondChestBlock.getLocation(), 
-                    new ChestData(player.getUniqueId(), 0, expiryTime));
             }
         }
         
-        Chest chest = (Chest) chestBlock.getState();
-        
-        // Set custom name if enabled
-        if (config.shouldNameChest()) {
-            chest.setCustomName(player.getName() + "'s Death Chest");
-            chest.update();
-            
-            if (secondChestBlock != null) {
-                Chest secondChest = (Chest) secondChestBlock.getState();
-                secondChest.setCustomName(player.getName() + "'s Death Chest");
-                secondChest.update();
-            }
+        // Then remove chest without dropping it
+        chestBlock.setType(Material.AIR, false);
+        if (removeChestData(chestBlock) != null) {
+            markDirty(chestBlock.getLocation(), expired ? ChestChange.EXPIRED : ChestChange.REMOVED);
         }
         
-        // List to track items that couldn't be stored
-        List<ItemStack> leftoverItems = new ArrayList<>();
-        
-        // Fill the chest(s) with the items, excluding items in the excluded list
-        for (ItemStack item : items) {
-            if (item != null && item.getType() != Material.AIR) {
-                // Skip excluded items
-                if (config.getExcludedItems().contains(item.getType().getKey().toString())) {
-                    leftoverItems.add(item);
-                    continue;
-                }
-                
-                // Try to add the item to the chest
-                HashMap<Integer, ItemStack> leftovers = chest.getInventory().addItem(item);
-                
-                // If there are leftovers and we have a second chest, add to that
-                if (!leftovers.isEmpty() && secondChestBlock != null) {
-                    Chest secondChest = (Chest) secondChestBlock.getState();
-                    leftovers = secondChest.getInventory().addItem(leftovers.values().toArray(new ItemStack[0]));
-                }
-                
-                // If there are still leftovers, track them
-                if (!leftovers.isEmpty()) {
-                    leftoverItems.addAll(leftovers.values());
-                }
-            }
+        // Notify player if provided
+        if (player != null) {
+            player.sendMessage(ChatColor.translateAlternateColorCodes('&', config.getMessageChestRemoved()));
         }
-        
-        // Play creation effects
-        Location chestLoc = chestBlock.getLocation().add(0.5, 0.5, 0.5);
-        chestLoc.getWorld().spawnParticle(Particle.FLAME, chestLoc, 50, 0.5, 0.5, 0.5, 0.1);
-        chestLoc.getWorld().playSound(chestLoc, Sound.BLOCK_ENCHANTMENT_TABLE_USE, 1.0f, 1.0f);
-        chestLoc.getWorld().playSound(chestLoc, Sound.BLOCK_CHEST_CLOSE, 1.0f, 0.5f);
-        
-        // Send custom coordinates message to player
-        String message = config.getMessageChestCreated()
-            .replace("{location}", formatLocation(chestBlock.getLocation()))
-            .replace("{x}", String.valueOf(chestBlock.getX()))
-            .replace("{y}", String.valueOf(chestBlock.getY()))
-            .replace("{z}", String.valueOf(chestBlock.getZ()));
-        player.sendMessage(ChatColor.translateAlternateColorCodes('&', message));
-        
-        return leftoverItems;
     }
     
     /**
-     * Removes a death chest when it's empty
+     * Silently removes a death chest whose creation failed, with its sign, hologram and
+     * registry entries. Unlike {@link #removeChest(Block, Player)}, no effects are played
+     * and nobody is notified. The chest's contents are not dropped.
      * 
-     * @param chestBlock The chest block to remove
-     * @param player The player who emptied the chest, or null if expired
+     * @param chestBlock The chest block
+     * @param partnerBlock The second half of a double chest, or null
      */
-    public void removeChest(Block chestBlock, Player player) {
-        if (chestBlock.getType() != Material.CHEST) {
-            return;
+    void discardChest(Block chestBlock, Block partnerBlock) {
+        if (chestBlock.getType() == Material.CHEST) {
+            removeDecorations(chestBlock);
         }
         
-        Location chestLoc = chestBlock.getLocation().add(0.5, 0.5, 0.5);
-        
-        // Play disappearing effects
-        chestLoc.getWorld().spawnParticle(Particle.SMOKE, chestLoc, 30, 0.2, 0.2, 0.2, 0.05);
-        chestLoc.getWorld().spawnParticle(Particle.PORTAL, chestLoc, 20, 0.2, 0.2, 0.2, 0.5);
-        chestLoc.getWorld().playSound(chestLoc, Sound.ENTITY_ENDERMAN_TELEPORT, 0.7f, 1.2f);
-        
+        for (Block block : new Block[] {chestBlock, partnerBlock}) {
+            if (block == null) {
+                continue;
+            }
+            if (block.getType() == Material.CHEST) {
+                block.setType(Material.AIR, false);
+            }
+            if (removeChestData(block) != null) {
+                markDirty(block.getLocation(), ChestChange.REMOVED);
+            }
+        }
+    }
+    
+    /**
+     * Removes the hologram and sign of a death chest
+     * 
+     * @param chestBlock The chest block
+     */
+    private void removeDecorations(Block chestBlock) {
         // Remove hologram if enabled
         if (config.isHologramEnabled()) {
             try {
@@ -321,33 +296,6 @@ public class ChestManager {
                 }
             }
         }
-        
-        // Check if this is part of a double chest
-        org.bukkit.block.data.type.Chest chestData = 
-            (org.bukkit.block.data.type.Chest) chestBlock.getBlockData();
-        
-        if (chestData.getType() != Type.SINGLE) {
-            // Find the other half of the chest
-            Block otherHalf = getOtherHalfOfChest(chestBlock, chestData);
-            
-            // Remove the other half if it exists and is empty
-            if (otherHalf != null && otherHalf.getType() == Material.CHEST) {
-                Chest otherChest = (Chest) otherHalf.getState();
-                if (otherChest.getInventory().isEmpty()) {
-                    otherHalf.setType(Material.AIR, false);
-                    deathChests.remove(otherHalf.getLocation());
-                }
-            }
-        }
-        
-        // Then remove chest without dropping it
-        chestBlock.setType(Material.AIR, false);
-        deathChests.remove(chestBlock.getLocation());
-        
-        // Notify player if provided
-        if (player != null) {
-            player.sendMessage(ChatColor.translateAlternateColorCodes('&', config.getMessageChestRemoved()));
-        }
     }
     
     /**
@@ -395,45 +343,6 @@ public class ChestManager {
         }
     }
     
-    /**
-     * Starts the expiration task for death chests
-     */
-    private void startExpirationTask() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                long currentTime = System.currentTimeMillis();
-                
-                // Create a copy of the keys to avoid concurrent modification
-                List<Location> locationsToCheck = new ArrayList<>(deathChests.keySet());
-                
-                for (Location loc : locationsToCheck) {
-                    ChestData data = deathChests.get(loc);
-                    if (data != null && data.getExpiryTime() > 0 && currentTime > data.getExpiryTime()) {
-                        // Chest has expired, remove it
-                        Block block = loc.getBlock();
-                        if (block.getType() == Material.CHEST) {
-                            // Remove chest without notifying player
-                            removeChest(block, null);
-                            
-                            // Notify player if they're online
-                            Player owner = plugin.getServer().getPlayer(data.getOwnerUUID());
-                            if (owner != null && owner.isOnline()) {
-                                String message = config.getMessageExpiryWarning()
-                                    .replace("{location}", formatLocation(loc))
-                                    .replace("{x}", String.valueOf(loc.getBlockX()))
-                                    .replace("{y}", String.valueOf(loc.getBlockY()))
-                                    .replace("{z}", String.valueOf(loc.getBlockZ()))
-                                    .replace("{time}", "0");
-                                owner.sendMessage(ChatColor.translateAlternateColorCodes('&', message));
-                            }
-                        }
-                    }
-                }
-            }
-        }.runTaskTimer(plugin, 20 * 60, 20 * 60); // Check every minute
-    }
-    
     /**
      * Checks if a chest is a death chest
      * 
@@ -441,7 +350,30 @@ public class ChestManager {
      * @return true if the location contains a death chest
      */
     public boolean isDeathChest(Location location) {
-        return deathChests.containsKey(location);
+        return getChestData(location) != null;
+    }
+    
+    /**
+     * Checks if a block is a death chest
+     * 
+     * @param block The block to check
+     * @return true if the block is a death chest
+     */
+    public boolean isDeathChest(Block block) {
+        return getChestData(block) != null;
+    }
+    
+    /**
+     * Checks if the block at the given coordinates is a death chest
+     * 
+     * @param world The world
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return true if the block is a death chest
+     */
+    public boolean isDeathChest(World world, int x, int y, int z) {
+        return getChestData(world, x, y, z) != null;
     }
     
     /**
@@ -451,7 +383,201 @@ public class ChestManager {
      * @return The chest data, or null if not a death chest
      */
     public ChestData getChestData(Location location) {
-        return deathChests.get(location);
+        return getChestData(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+    
+    /**
+     * Gets the chest data for a block
+     * 
+     * @param block The block to check
+     * @return The chest data, or null if not a death chest
+     */
+    public ChestData getChestData(Block block) {
+        return getChestData(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+    
+    /**
+     * Gets the chest data for the block at the given coordinates
+     * 
+     * @param world The world
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return The chest data, or null if not a death chest
+     */
+    public ChestData getChestData(World world, int x, int y, int z) {
+        if (world == null) {
+            return null;
+        }
+        LongObjectHashMap<ChestData> chests = deathChests.get(world.getUID());
+        return chests != null ? chests.get(BlockPos.pack(x, y, z)) : null;
+    }
+    
+    /**
+     * Adds a chest to the registry
+     * 
+     * @param world The world
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @param chestData The chest data
+     */
+    private void putChest(World world, int x, int y, int z, ChestData chestData) {
+        long pos = BlockPos.pack(x, y, z);
+        ChestData previous = deathChests.computeIfAbsent(world.getUID(), uid -> new LongObjectHashMap<>())
+            .put(pos, chestData);
+        
+        if (previous != null) {
+            unindexOwner(previous.getOwnerUUID(), world.getUID(), pos);
+        }
+        chestsByOwner.computeIfAbsent(chestData.getOwnerUUID(), owner -> new HashMap<>())
+            .computeIfAbsent(world.getUID(), uid -> new LongObjectHashMap<>())
+            .put(pos, chestData);
+        if (previous == null) {
+            LongObjectHashMap<long[]> worldChunks = chestsByChunk.computeIfAbsent(world.getUID(), uid -> new LongObjectHashMap<>());
+            long chunk = chunkKey(x >> 4, z >> 4);
+            long[] chunkChests = worldChunks.get(chunk);
+            if (chunkChests == null) {
+                worldChunks.put(chunk, new long[] {pos});
+            } else {
+                long[] grown = Arrays.copyOf(chunkChests, chunkChests.length + 1);
+                grown[chunkChests.length] = pos;
+                worldChunks.put(chunk, grown);
+            }
+        }
+        scheduleDeadlines(world, pos, chestData);
+    }
+    
+    private void putChest(Block block, ChestData chestData) {
+        putChest(block.getWorld(), block.getX(), block.getY(), block.getZ(), chestData);
+    }
+    
+    /**
+     * Removes a chest from the registry
+     * 
+     * @param block The chest block
+     * @return The removed chest data, or null if the block was not a death chest
+     */
+    private ChestData removeChestData(Block block) {
+        LongObjectHashMap<ChestData> chests = deathChests.get(block.getWorld().getUID());
+        ChestData removed = chests != null ? chests.remove(BlockPos.pack(block.getX(), block.getY(), block.getZ())) : null;
+        if (removed != null) {
+            unindexOwner(removed.getOwnerUUID(), block.getWorld().getUID(), BlockPos.pack(block.getX(), block.getY(), block.getZ()));
+            unindexChunk(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+        }
+        return removed;
+    }
+    
+    private void unindexChunk(UUID worldUID, int x, int y, int z) {
+        LongObjectHashMap<long[]> worldChunks = chestsByChunk.get(worldUID);
+        if (worldChunks == null) {
+            return;
+        }
+        long chunk = chunkKey(x >> 4, z >> 4);
+        long[] chunkChests = worldChunks.get(chunk);
+        if (chunkChests == null) {
+            return;
+        }
+        
+        long pos = BlockPos.pack(x, y, z);
+        for (int i = 0; i < chunkChests.length; i++) {
+            if (chunkChests[i] != pos) {
+                continue;
+            }
+            if (chunkChests.length > 1) {
+                long[] shrunk = new long[chunkChests.length - 1];
+                System.arraycopy(chunkChests, 0, shrunk, 0, i);
+                System.arraycopy(chunkChests, i + 1, shrunk, i, shrunk.length - i);
+                worldChunks.put(chunk, shrunk);
+            } else {
+                worldChunks.remove(chunk);
+                if (worldChunks.isEmpty()) {
+                    chestsByChunk.remove(worldUID);
+                }
+            }
+            return;
+        }
+    }
+    
+    /**
+     * Gets the packed positions of the death chests in a chunk
+     * 
+     * @param world The world
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The positions, empty if there are none; not modified by later changes
+     */
+    private long[] chestsInChunk(World world, int chunkX, int chunkZ) {
+        LongObjectHashMap<long[]> worldChunks = chestsByChunk.get(world.getUID());
+        long[] chunkChests = worldChunks != null ? worldChunks.get(chunkKey(chunkX, chunkZ)) : null;
+        return chunkChests != null ? chunkChests : NO_POSITIONS;
+    }
+    
+    private void unindexOwner(UUID ownerUUID, UUID worldUID, long pos) {
+        Map<UUID, LongObjectHashMap<ChestData>> owned = chestsByOwner.get(ownerUUID);
+        LongObjectHashMap<ChestData> worldOwned = owned != null ? owned.get(worldUID) : null;
+        if (worldOwned == null || worldOwned.remove(pos) == null || !worldOwned.isEmpty()) {
+            return;
+        }
+        owned.remove(worldUID);
+        if (owned.isEmpty()) {
+            chestsByOwner.remove(ownerUUID);
+        }
+    }
+    
+    /**
+     * Gets the locations of all death chests owned by a player. Only the player's own
+     * chests are visited.
+     * 
+     * @param ownerUUID The owner's UUID
+     * @return The chest locations, in no particular order; empty if the player has none
+     */
+    public List<Location> getChestLocations(UUID ownerUUID) {
+        Map<UUID, LongObjectHashMap<ChestData>> owned = chestsByOwner.get(ownerUUID);
+        if (owned == null) {
+            return Collections.emptyList();
+        }
+        
+        List<Location> locations = new ArrayList<>();
+        for (Map.Entry<UUID, LongObjectHashMap<ChestData>> entry : owned.entrySet()) {
+            World world = plugin.getServer().getWorld(entry.getKey());
+            if (world == null) {
+                continue;
+            }
+            for (long pos : entry.getValue().keys()) {
+                locations.add(new Location(world, BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos)));
+            }
+        }
+        return locations;
+    }
+    
+    /**
+     * Gets the number of death chests owned by a player
+     * 
+     * @param ownerUUID The owner's UUID
+     * @return The number of chests
+     */
+    public int getChestCount(UUID ownerUUID) {
+        Map<UUID, LongObjectHashMap<ChestData>> owned = chestsByOwner.get(ownerUUID);
+        if (owned == null) {
+            return 0;
+        }
+        
+        int count = 0;
+        for (LongObjectHashMap<ChestData> worldOwned : owned.values()) {
+            count += worldOwned.size();
+        }
+        return count;
+    }
+    
+    /**
+     * Checks whether a player owns any death chests
+     * 
+     * @param ownerUUID The owner's UUID
+     * @return true if the player owns at least one death chest
+     */
+    public boolean hasChests(UUID ownerUUID) {
+        return chestsByOwner.containsKey(ownerUUID);
     }
     
     /**
@@ -481,6 +607,13 @@ public class ChestManager {
                     container.remove(experienceKey);
                     tileState.update();
                     
+                    Block block = chest.getBlock();
+                    ChestData chestData = getChestData(block);
+                    if (chestData != null) {
+                        chestData.setExperience(0);
+                        markDirty(block.getLocation(), ChestChange.EXPERIENCE_CLAIMED);
+                    }
+                    
                     return true;
                 }
             }
@@ -527,80 +660,199 @@ public class ChestManager {
     }
     
     /**
-     * Starts the task that checks for chest expiry and sends warnings
+     * Starts the task that sends expiry warnings and removes expired chests. It runs every
+     * tick but only looks at the head of the deadline queue, so it costs nothing while no
+     * chest is due.
+     */
+    private void startExpiryTask() {
+        if (expiryTask != null) {
+            expiryTask.cancel();
+        }
+        
+        expiryTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::processDeadlines, 1, 1);
+    }
+    
+    /**
+     * Queues the expiry warning and expiration of a newly registered chest
+     * 
+     * @param world The world
+     * @param pos The packed block position
+     * @param chestData The chest data
      */
-    private void startExpiryWarningTask() {
-        // Only start if expiry warnings are enabled
-        if (config.getExpiryWarningTime() <= 0) {
+    private void scheduleDeadlines(World world, long pos, ChestData chestData) {
+        long expiryTime = chestData.getExpiryTime();
+        if (expiryTime <= 0) {
             return;
         }
-
-        // Cancel existing task if running
-        if (expiryWarningTask != null) {
-            expiryWarningTask.cancel();
+        
+        long warningTime = config.getExpiryWarningTime() * 60000L;
+        if (warningTime > 0 && !chestData.isWarningShown()) {
+            long warnAt = Math.max(expiryTime - warningTime, System.currentTimeMillis());
+            deadlines.add(new ChestDeadline(warnAt, true, world.getUID(), pos, chestData));
         }
-
-        // Create new task
-        expiryWarningTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                long currentTime = System.currentTimeMillis();
-                long warningTime = config.getExpiryWarningTime() * 60000; // Convert to milliseconds
-
-                for (Map.Entry<Location, ChestData> entry : deathChests.entrySet()) {
-                    ChestData chestData = entry.getValue();
-                    
-                    // Skip if chest has no expiry time
-                    if (chestData.getExpiryTime() <= 0) {
-                        continue;
-                    }
-                    
-                    // Check if chest is within the warning period
-                    long timeUntilExpiry = chestData.getExpiryTime() - currentTime;
-                    if (timeUntilExpiry > 0 && timeUntilExpiry <= warningTime && !chestData.isWarningShown()) {
-                        // Mark warning as shown
-                        chestData.setWarningShown(true);
-                        
-                        // Get the owner player
-                        Player owner = plugin.getServer().getPlayer(chestData.getOwnerUUID());
-                        if (owner != null && owner.isOnline()) {
-                            // Send warning message
-                            Location loc = entry.getKey();
-                            String message = config.getMessageExpiryWarning()
-                                .replace("{location}", formatLocation(loc))
-                                .replace("{x}", String.valueOf(loc.getBlockX()))
-                                .replace("{y}", String.valueOf(loc.getBlockY()))
-                                .replace("{z}", String.valueOf(loc.getBlockZ()))
-                                .replace("{time}", String.valueOf(config.getExpiryWarningTime()));
-                            owner.sendMessage(ChatColor.translateAlternateColorCodes('&', message));
-                        }
-                    }
-                }
+        deadlines.add(new ChestDeadline(expiryTime, false, world.getUID(), pos, chestData));
+    }
+    
+    /**
+     * Handles every deadline that is due. Warnings are sent straight away; expired chests are
+     * queued and removed within the per-tick time budget, so a mass expiry is spread over
+     * several ticks. Deadlines of chests that were removed or replaced in the meantime are
+     * simply dropped.
+     */
+    private void processDeadlines() {
+        long currentTime = System.currentTimeMillis();
+        
+        ChestDeadline deadline;
+        while ((deadline = deadlines.peek()) != null && deadline.getTime() <= currentTime) {
+            deadlines.poll();
+            
+            if (!deadline.isWarning()) {
+                expiryBacklog.add(deadline);
+                continue;
+            }
+            
+            Location loc = resolveDeadline(deadline);
+            ChestData chestData = deadline.getChestData();
+            if (loc == null || chestData.isWarningShown() || chestData.getExpiryTime() <= currentTime) {
+                continue;
+            }
+            chestData.setWarningShown(true);
+            
+            Player owner = plugin.getServer().getPlayer(chestData.getOwnerUUID());
+            if (owner != null && owner.isOnline()) {
+                sendExpiryMessage(owner, loc, String.valueOf(config.getExpiryWarningTime()));
             }
-        };
+        }
         
-        // Run every minute
-        expiryWarningTask.runTaskTimer(plugin, 20 * 60, 20 * 60);
+        if (!expiryBacklog.isEmpty()) {
+            drainExpiryBacklog();
+        }
+    }
+    
+    /**
+     * Removes expired chests until the tick budget is used up. Whatever is left carries
+     * over to the next tick.
+     */
+    private void drainExpiryBacklog() {
+        long budget = config.getExpiryTickBudget();
+        long startTime = System.nanoTime();
+        int expired = 0;
+        
+        // Always make progress, even with a budget of zero
+        do {
+            ChestDeadline deadline = expiryBacklog.poll();
+            Location loc = resolveDeadline(deadline);
+            if (loc != null) {
+                expireChest(loc, deadline.getChestData());
+                expired++;
+            }
+        } while (!expiryBacklog.isEmpty() && System.nanoTime() - startTime < budget);
+        
+        if (config.isDebugEnabled() && expired > 0) {
+            plugin.getLogger().info("Expired " + expired + " death chests in " + (System.nanoTime() - startTime)
+                + "ns (budget " + budget + "ns), " + expiryBacklog.size() + " left for the next tick.");
+        }
+    }
+    
+    /**
+     * Gets the location of the chest a deadline belongs to
+     * 
+     * @param deadline The deadline
+     * @return The chest location, or null if the chest was removed or replaced since
+     */
+    private Location resolveDeadline(ChestDeadline deadline) {
+        LongObjectHashMap<ChestData> chests = deathChests.get(deadline.getWorldUID());
+        World world = plugin.getServer().getWorld(deadline.getWorldUID());
+        if (chests == null || world == null || chests.get(deadline.getPos()) != deadline.getChestData()) {
+            return null;
+        }
+        
+        long pos = deadline.getPos();
+        return new Location(world, BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+    }
+    
+    /**
+     * Removes an expired chest and tells its owner if they are online
+     * 
+     * @param loc The chest location
+     * @param chestData The chest data
+     */
+    private void expireChest(Location loc, ChestData chestData) {
+        World world = loc.getWorld();
+        int chunkX = loc.getBlockX() >> 4;
+        int chunkZ = loc.getBlockZ() >> 4;
+        
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            removeExpiredChest(world.getBlockAt(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
+        } else {
+            // Never load a chunk just to remove a chest; finish the job when the game loads it
+            expiredChests.computeIfAbsent(world.getUID(), uid -> new HashMap<>())
+                .computeIfAbsent(chunkKey(chunkX, chunkZ), key -> new ArrayList<>())
+                .add(BlockPos.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
+            
+            if (config.isDebugEnabled()) {
+                plugin.getLogger().info("Death chest at " + formatLocation(loc) + " expired in an unloaded chunk, "
+                    + "it will be removed when the chunk loads.");
+            }
+        }
+        
+        // Notify player if they're online
+        Player owner = plugin.getServer().getPlayer(chestData.getOwnerUUID());
+        if (owner != null && owner.isOnline()) {
+            sendExpiryMessage(owner, loc, "0");
+        }
+    }
+    
+    /**
+     * Removes an expired chest block, or just forgets the chest if its block was replaced
+     * 
+     * @param block The chest block, in a loaded chunk
+     */
+    private void removeExpiredChest(Block block) {
+        if (block.getType() != Material.CHEST) {
+            // The block was replaced behind our back, just forget the chest
+            if (removeChestData(block) != null) {
+                markDirty(block.getLocation(), ChestChange.EXPIRED);
+            }
+            return;
+        }
+        
+        // Remove chest without notifying player
+        removeChest(block, null, true);
+    }
+    
+    /**
+     * Sends the expiry message for a chest
+     * 
+     * @param owner The chest owner
+     * @param loc The chest location
+     * @param time The value for the {time} placeholder
+     */
+    private void sendExpiryMessage(Player owner, Location loc, String time) {
+        String message = config.getMessageExpiryWarning()
+            .replace("{location}", formatLocation(loc))
+            .replace("{x}", String.valueOf(loc.getBlockX()))
+            .replace("{y}", String.valueOf(loc.getBlockY()))
+            .replace("{z}", String.valueOf(loc.getBlockZ()))
+            .replace("{time}", time);
+        owner.sendMessage(ChatColor.translateAlternateColorCodes('&', message));
     }
 
     /**
      * Cancels the expiration task
      */
     public void cancelExpirationTask() {
-        if (expiryWarningTask != null) {
-            expiryWarningTask.cancel();
-            expiryWarningTask = null;
+        if (expiryTask != null) {
+            expiryTask.cancel();
+            expiryTask = null;
         }
     }
 
     /**
-     * Cancels the expiry warning task
+     * Cancels the expiry warning task. Warnings are sent by the expiration task.
      */
     public void cancelExpiryWarningTask() {
-        if (expiryWarningTask != null) {
-            expiryWarningTask.cancel();
-            expiryWarningTask = null;
-        }
+        cancelExpirationTask();
     }
 
     /**
@@ -629,170 +881,400 @@ public class ChestManager {
             return true;
         }
         
-        // Check WorldGuard if available
-        Plugin worldGuard = plugin.getServer().getPluginManager().getPlugin("WorldGuard");
-        if (worldGuard != null && worldGuard.isEnabled()) {
+        return protectionManager.canBuild(player, location);
+    }
+    
+    /**
+     * Gets the protection plugin integration
+     * 
+     * @return The protection manager
+     */
+    public ProtectionManager getProtectionManager() {
+        return protectionManager;
+    }
+    
+    /**
+     * Creates the configured storage backend, falling back to file storage if the
+     * database cannot be opened
+     * 
+     * @return The storage backend
+     */
+    private ChestStore createChestStore() {
+        if ("SQLITE".equals(config.getStorageType())) {
+            SqliteChestStore store = new SqliteChestStore(plugin, config, persistenceWorker);
             try {
-                // Use reflection to avoid hard dependency
-                Class<?> worldGuardPluginClass = Class.forName("com.sk89q.worldguard.bukkit.WorldGuardPlugin");
-                Object worldGuardPlugin = worldGuardPluginClass.getMethod("inst").invoke(null);
-                boolean canBuild = (boolean) worldGuardPluginClass.getMethod("canBuild", Player.class, Location.class)
-                        .invoke(worldGuardPlugin, player, location);
-                
-                if (!canBuild) {
-                    return false;
-                }
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to check WorldGuard protection: " + e.getMessage());
+                store.open();
+                return store;
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to open SQLite storage, falling back to file storage: " + e.getMessage());
             }
         }
         
-        // Check GriefPrevention if available
-        Plugin griefPrevention = plugin.getServer().getPluginManager().getPlugin("GriefPrevention");
-        if (griefPrevention != null && griefPrevention.isEnabled()) {
-            try {
-                // Use reflection to avoid hard dependency
-                Class<?> dataStoreClass = Class.forName("me.ryanhamshire.GriefPrevention.DataStore");
-                Object dataStore = Class.forName("me.ryanhamshire.GriefPrevention.GriefPrevention")
-                        .getMethod("getDataStore").invoke(null);
-                
-                String reason = (String) dataStoreClass.getMethod("allowBuild", Player.class, Location.class, Material.class)
-                        .invoke(dataStore, player, location, Material.CHEST);
-                
-                if (reason != null) {
-                    return false;
-                }
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to check GriefPrevention protection: " + e.getMessage());
+        return new FileChestStore(plugin, config, persistenceWorker);
+    }
+    
+    /**
+     * Gets the storage backend
+     * 
+     * @return The storage backend, or null if persistent storage is disabled
+     */
+    public ChestStore getChestStore() {
+        return chestStore;
+    }
+    
+    /**
+     * Loads death chests from persistent storage. Chests are registered, and their expiry
+     * warnings and expirations scheduled, straight away; their blocks are only checked when
+     * the chunk loads, so startup never loads a chunk. Chests of worlds that are not loaded
+     * yet wait for the first chunk of their world.
+     */
+    private void loadChests() {
+        if (chestStore == null) {
+            return;
+        }
+        
+        int count = 0;
+        for (StoredChest stored : chestStore.load()) {
+            World world = plugin.getServer().getWorld(stored.getWorldName());
+            if (world != null) {
+                registerStoredChest(world, stored);
+            } else {
+                pendingChests.computeIfAbsent(stored.getWorldName(), name -> new ArrayList<>()).add(stored);
             }
+            count++;
         }
         
-        return true;
+        plugin.getLogger().info("Loaded " + count + " death chests from storage.");
     }
     
     /**
-     * Loads death chests from persistent storage
+     * Registers a chest from storage without looking at its block, which is checked once
+     * its chunk loads
+     * 
+     * @param world The world the chest is in
+     * @param stored The stored chest
      */
-    private void loadChests() {
-        if (!persistentStorage) {
-            return;
+    private void registerStoredChest(World world, StoredChest stored) {
+        putChest(world, stored.getX(), stored.getY(), stored.getZ(),
+            new ChestData(stored.getOwnerUUID(), stored.getExperience(), stored.getExpiryTime()));
+        uncheckedChunks.computeIfAbsent(world.getUID(), uid -> new LongObjectHashMap<>())
+            .put(chunkKey(stored.getX() >> 4, stored.getZ() >> 4), Boolean.TRUE);
+    }
+    
+    /**
+     * Hydrates stored chests in chunks that were already loaded when the plugin enabled
+     */
+    private void hydrateLoadedChunks() {
+        for (World world : plugin.getServer().getWorlds()) {
+            LongObjectHashMap<Boolean> worldUnchecked = uncheckedChunks.get(world.getUID());
+            if (worldUnchecked == null) {
+                continue;
+            }
+            
+            for (long key : worldUnchecked.keys()) {
+                int chunkX = (int) (key >> 32);
+                int chunkZ = (int) key;
+                if (world.isChunkLoaded(chunkX, chunkZ)) {
+                    hydrateChunk(world.getChunkAt(chunkX, chunkZ));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks the blocks of stored chests in a chunk that just loaded, removes chests that
+     * expired while it was unloaded and restores the holograms of every death chest in it
+     * 
+     * @param chunk The loaded chunk
+     */
+    public void hydrateChunk(Chunk chunk) {
+        World world = chunk.getWorld();
+        List<StoredChest> worldPending = pendingChests.remove(world.getName());
+        if (worldPending != null) {
+            for (StoredChest stored : worldPending) {
+                registerStoredChest(world, stored);
+            }
         }
         
-        File storageFile = new File(plugin.getDataFolder(), "chests.yml");
-        if (!storageFile.exists()) {
-            return;
+        LongObjectHashMap<Boolean> worldUnchecked = uncheckedChunks.get(world.getUID());
+        if (worldUnchecked != null && worldUnchecked.remove(chunkKey(chunk.getX(), chunk.getZ())) != null) {
+            if (worldUnchecked.isEmpty()) {
+                uncheckedChunks.remove(world.getUID());
+            }
+            checkStoredChests(world, chunk.getX(), chunk.getZ());
         }
         
-        YamlConfiguration storage = YamlConfiguration.loadConfiguration(storageFile);
-        ConfigurationSection chestsSection = storage.getConfigurationSection("chests");
+        // Remove chests that expired while the chunk was unloaded
+        Map<Long, List<Long>> worldExpired = expiredChests.get(world.getUID());
+        if (worldExpired != null) {
+            List<Long> expired = worldExpired.remove(chunkKey(chunk.getX(), chunk.getZ()));
+            if (worldExpired.isEmpty()) {
+                expiredChests.remove(world.getUID());
+            }
+            if (expired != null) {
+                for (long pos : expired) {
+                    Block block = world.getBlockAt(BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+                    if (getChestData(block) != null) {
+                        removeExpiredChest(block);
+                    }
+                }
+            }
+        }
         
-        if (chestsSection == null) {
+        HologramManager hologramManager = findHologramManager();
+        LongObjectHashMap<ChestData> chests = deathChests.get(world.getUID());
+        if (hologramManager == null || chests == null) {
+            return;
+        }
+        
+        for (long pos : chestsInChunk(world, chunk.getX(), chunk.getZ())) {
+            ChestData chestData = chests.get(pos);
+            Location location = new Location(world, BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+            String playerName = plugin.getServer().getOfflinePlayer(chestData.getOwnerUUID()).getName();
+            hologramManager.createHologram(location, playerName != null ? playerName : "Unknown",
+                chestData.getExpiryTime());
+        }
+    }
+    
+    /**
+     * Drops the holograms of death chests in a chunk that is unloading. They are not saved
+     * with the chunk and are recreated when it loads again.
+     * 
+     * @param chunk The unloading chunk
+     */
+    public void releaseChunk(Chunk chunk) {
+        HologramManager hologramManager = findHologramManager();
+        if (hologramManager == null) {
             return;
         }
         
-        for (String key : chestsSection.getKeys(false)) {
+        World world = chunk.getWorld();
+        for (long pos : chestsInChunk(world, chunk.getX(), chunk.getZ())) {
+            hologramManager.removeHologram(
+                new Location(world, BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos)));
+        }
+    }
+    
+    /**
+     * Checks the chests of a just loaded chunk against their blocks and forgets those whose
+     * block is gone. Expired chests are left to the expiry removal that follows.
+     * 
+     * @param world The world the chunk is in
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     */
+    private void checkStoredChests(World world, int chunkX, int chunkZ) {
+        boolean deleted = false;
+        for (long pos : chestsInChunk(world, chunkX, chunkZ)) {
             try {
-                ConfigurationSection chestSection = chestsSection.getConfigurationSection(key);
-                if (chestSection == null) {
-                    continue;
-                }
-                
-                // Parse location
-                String worldName = chestSection.getString("world");
-                int x = chestSection.getInt("x");
-                int y = chestSection.getInt("y");
-                int z = chestSection.getInt("z");
-                
-                World world = plugin.getServer().getWorld(worldName);
-                if (world == null) {
+                Block block = world.getBlockAt(BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+                if (block.getType() == Material.CHEST) {
                     continue;
                 }
                 
-                Location location = new Location(world, x, y, z);
-                
-                // Parse owner UUID
-                String uuidString = chestSection.getString("owner");
-                UUID ownerUUID = UUID.fromString(uuidString);
-                
-                // Parse other data
-                int experience = chestSection.getInt("experience", 0);
-                long expiryTime = chestSection.getLong("expiry-time", 0);
-                
-                // Skip expired chests
-                if (expiryTime > 0 && expiryTime < System.currentTimeMillis()) {
-                    continue;
-                }
-                
-                // Check if the chest block exists
-                Block block = location.getBlock();
-                if (block.getType() != Material.CHEST) {
-                    continue;
-                }
-                
-                // Register the chest
-                ChestData chestData = new ChestData(ownerUUID, experience, expiryTime);
-                deathChests.put(location, chestData);
-                
+                removeChestData(block);
+                dirtyChests.remove(block.getLocation());
+                chestStore.delete(world.getName(), block.getX(), block.getY(), block.getZ(), false);
+                deleted = true;
                 if (config.isDebugEnabled()) {
-                    plugin.getLogger().info("Loaded death chest at " + formatLocation(location) + " for " + ownerUUID);
+                    plugin.getLogger().info("Dropped death chest at " + formatLocation(block.getLocation()) + ", its block is gone.");
                 }
             } catch (Exception e) {
                 plugin.getLogger().warning("Failed to load death chest: " + e.getMessage());
             }
         }
         
-        plugin.getLogger().info("Loaded " + deathChests.size() + " death chests from storage.");
+        // Chests whose block is gone are written as one batch for the whole chunk
+        if (deleted) {
+            chestStore.flush();
+        }
     }
     
     /**
-     * Saves death chests to persistent storage
+     * Packs chunk coordinates into a single key
+     * 
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The chunk key
+     */
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Gets the hologram manager from the main plugin class
+     * 
+     * @return The hologram manager, or null if holograms are disabled
+     */
+    private HologramManager findHologramManager() {
+        if (plugin instanceof io.mckenz.friendlydeathchest.FriendlyDeathChest mainPlugin) {
+            return mainPlugin.getHologramManager();
+        }
+        return null;
+    }
+    
+    /**
+     * Saves death chests to persistent storage and stops the storage thread.
+     * Pending writes are waited on for at most the configured shutdown timeout.
      */
     public void saveChests() {
-        if (!persistentStorage) {
+        if (chestStore == null) {
             return;
         }
         
-        File storageFile = new File(plugin.getDataFolder(), "chests.yml");
-        YamlConfiguration storage = new YamlConfiguration();
+        if (autosaveTask != null) {
+            autosaveTask.cancel();
+            autosaveTask = null;
+        }
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        // Changes from the last tick, and from shutdown itself, have no flush scheduled
+        flushDirtyChests();
         
-        ConfigurationSection chestsSection = storage.createSection("chests");
-        int count = 0;
+        chestStore.close().whenComplete((count, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Failed to save death chests: " + error.getMessage());
+            } else if (config.isDebugEnabled()) {
+                plugin.getLogger().info("Saved " + count + " death chests to storage.");
+            }
+        });
+        
+        if (!persistenceWorker.shutdown(config.getStorageShutdownTimeout())) {
+            plugin.getLogger().warning("Timed out waiting for death chest storage to finish writing. "
+                + "Changes that were not written yet may be lost.");
+        }
+    }
+    
+    /**
+     * Converts a registry entry into its persisted form
+     * 
+     * @param location The chest location
+     * @param chestData The chest data
+     * @return The stored chest
+     */
+    private StoredChest toStoredChest(Location location, ChestData chestData) {
+        return new StoredChest(location.getWorld().getName(), location.getBlockX(), location.getBlockY(),
+            location.getBlockZ(), chestData.getOwnerUUID(), chestData.getExperience(), chestData.getExpiryTime());
+    }
+    
+    /**
+     * Records that a chest changed since the last flush. Repeated changes to the same chest
+     * are coalesced, and the batch is handed to the store on the next tick.
+     * 
+     * @param location The chest location
+     * @param change What happened to the chest
+     */
+    private void markDirty(Location location, ChestChange change) {
+        if (chestStore == null) {
+            return;
+        }
+        
+        // A pending creation already carries the latest state, including claimed experience
+        ChestChange previous = dirtyChests.get(location);
+        if (previous == ChestChange.CREATED && change == ChestChange.EXPERIENCE_CLAIMED) {
+            return;
+        }
+        dirtyChests.put(location, change);
+        
+        if (flushTask == null && plugin.isEnabled()) {
+            flushTask = plugin.getServer().getScheduler().runTask(plugin, this::flushDirtyChests);
+        }
+    }
+    
+    /**
+     * Writes every chest changed since the last flush to the store as a single batch
+     */
+    private void flushDirtyChests() {
+        flushTask = null;
+        if (chestStore == null || dirtyChests.isEmpty()) {
+            return;
+        }
         
-        for (Map.Entry<Location, ChestData> entry : deathChests.entrySet()) {
+        for (Map.Entry<Location, ChestChange> entry : dirtyChests.entrySet()) {
             Location location = entry.getKey();
-            ChestData chestData = entry.getValue();
+            World world = location.getWorld();
+            String worldName = world.getName();
+            int x = location.getBlockX();
+            int y = location.getBlockY();
+            int z = location.getBlockZ();
+            ChestData chestData = getChestData(world, x, y, z);
             
-            // Skip chests that are expired
-            if (chestData.getExpiryTime() > 0 && chestData.getExpiryTime() < System.currentTimeMillis()) {
-                continue;
+            if (chestData == null) {
+                chestStore.delete(worldName, x, y, z, entry.getValue() == ChestChange.EXPIRED);
+            } else {
+                chestStore.upsert(toStoredChest(location, chestData));
             }
-            
-            ConfigurationSection chestSection = chestsSection.createSection(String.valueOf(count++));
-            
-            // Save location
-            chestSection.set("world", location.getWorld().getName());
-            chestSection.set("x", location.getBlockX());
-            chestSection.set("y", location.getBlockY());
-            chestSection.set("z", location.getBlockZ());
-            
-            // Save chest data
-            chestSection.set("owner", chestData.getOwnerUUID().toString());
-            chestSection.set("experience", chestData.getExperience());
-            chestSection.set("expiry-time", chestData.getExpiryTime());
         }
         
-        try {
-            storage.save(storageFile);
-            if (config.isDebugEnabled()) {
-                plugin.getLogger().info("Saved " + count + " death chests to storage.");
-            }
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save death chests: " + e.getMessage());
+        if (config.isDebugEnabled()) {
+            plugin.getLogger().info("Flushed " + dirtyChests.size() + " changed death chests to storage.");
         }
+        
+        dirtyChests.clear();
+        chestStore.flush();
+    }
+    
+    /**
+     * Makes all changes since the last autosave durable. Does no I/O at all if nothing changed.
+     */
+    public void autosave() {
+        if (chestStore == null) {
+            return;
+        }
+        
+        flushDirtyChests();
+        chestStore.sync();
+    }
+    
+    /**
+     * Starts the periodic autosave task
+     */
+    private void startAutosaveTask() {
+        int interval = config.getAutosaveInterval();
+        if (chestStore == null || interval <= 0) {
+            return;
+        }
+        
+        autosaveTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::autosave,
+            interval * 20L, interval * 20L);
     }
 
     public void registerChest(Location location, ChestData chestData) {
-        deathChests.put(location, chestData);
+        putChest(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ(), chestData);
+        markDirty(location, ChestChange.CREATED);
+    }
+
+    /**
+     * Stores the owner, expiry time and experience of a new death chest in its block and
+     * names it, in a single block state update
+     * 
+     * @param chestBlock The chest block
+     * @param owner The UUID of the owner
+     * @param expiryTime When the chest expires, 0 if never
+     * @param experiencePoints The stored experience, 0 if none
+     * @param customName The chest name, or null to leave it unnamed
+     * @return true if the block is a chest and was tagged
+     */
+    boolean tagChest(Block chestBlock, UUID owner, long expiryTime, int experiencePoints, String customName) {
+        if (!(chestBlock.getState() instanceof Chest chest)) {
+            return false;
+        }
+        
+        PersistentDataContainer container = chest.getPersistentDataContainer();
+        container.set(ownerKey, PersistentDataType.STRING, owner.toString());
+        if (expiryTime > 0) {
+            container.set(expiryTimeKey, PersistentDataType.LONG, expiryTime);
+        }
+        if (experiencePoints > 0) {
+            container.set(experienceKey, PersistentDataType.INTEGER, experiencePoints);
+        }
+        if (customName != null) {
+            chest.setCustomName(customName);
+        }
+        chest.update();
+        return true;
     }
 
     /**
@@ -801,7 +1283,7 @@ public class ChestManager {
      * @param firstChest The first chest block
      * @param secondChest The second chest block
      */
-    private void connectChests(Block firstChest, Block secondChest) {
+    void connectChests(Block firstChest, Block secondChest) {
         org.bukkit.block.data.type.Chest firstChestData = 
             (org.bukkit.block.data.type.Chest) firstChest.getBlockData();
         org.bukkit.block.data.type.Chest secondChestData = 
@@ -832,4 +1314,54 @@ public class ChestManager {
             secondChest.setBlockData(secondChestData);
         }
     }
+    
+    /**
+     * Kinds of registry changes tracked between storage flushes
+     */
+    private enum ChestChange {
+        CREATED,
+        REMOVED,
+        EXPIRED,
+        EXPERIENCE_CLAIMED
+    }
+    
+    /**
+     * A queued expiry warning or expiration. Holds the chest data it was created for, so a
+     * deadline for a chest that has since been removed or replaced is recognised and skipped.
+     */
+    private static final class ChestDeadline {
+        private final long time;
+        private final boolean warning;
+        private final UUID worldUID;
+        private final long pos;
+        private final ChestData chestData;
+        
+        private ChestDeadline(long time, boolean warning, UUID worldUID, long pos, ChestData chestData) {
+            this.time = time;
+            this.warning = warning;
+            this.worldUID = worldUID;
+            this.pos = pos;
+            this.chestData = chestData;
+        }
+        
+        long getTime() {
+            return time;
+        }
+        
+        boolean isWarning() {
+            return warning;
+        }
+        
+        UUID getWorldUID() {
+            return worldUID;
+        }
+        
+        long getPos() {
+            return pos;
+        }
+        
+        ChestData getChestData() {
+            return chestData;
+        }
+    }
 } 
\ No newline at end of file
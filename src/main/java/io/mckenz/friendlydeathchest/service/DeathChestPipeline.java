@@ -0,0 +1,749 @@
+package io.mckenz.friendlydeathchest.service;
+
+import io.mckenz.friendlydeathchest.config.ConfigManager;
+import io.mckenz.friendlydeathchest.config.ItemRules;
+import io.mckenz.friendlydeathchest.model.ChestData;
+import io.mckenz.friendlydeathchest.utils.BlockPos;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.Chest;
+import org.bukkit.block.Sign;
+import org.bukkit.entity.ExperienceOrb;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Turns players' deaths into death chests, one stage at a time.
+ * <p>
+ * Deaths are collected during a tick and processed together on the next one, so mass
+ * deaths (explosions, boss fights, arena wipes) cost one batch instead of one pass each.
+ * The search stage finds and claims a location for every death in the batch, on the main
+ * thread in slices sharing a single tick budget, or on a background thread, depending on
+ * location-search-mode. Searches in the same tick share their block reads, and claimed
+ * locations keep later searches away until the end of the tick, so each death is placed in
+ * the tick its search finishes: it goes through the compact, reserve, materialize, fill,
+ * decorate and persist stages on the main thread. Creation effects are
+ * then played once per area, and the players are notified together. Every stage is timed,
+ * and with debug enabled the timings of each batch are logged.
+ * <p>
+ * Drops are held here until their chest is placed. If no chest can be placed they are
+ * dropped at the death location.
+ */
+public class DeathChestPipeline {
+    private static final int SINGLE_CHEST_SIZE = 27;
+    private static final int DOUBLE_CHEST_SIZE = 54;
+
+    /**
+     * The stages of the pipeline
+     */
+    public enum Stage { SEARCH, COMPACT, RESERVE, MATERIALIZE, FILL, DECORATE, NOTIFY, PERSIST }
+
+    private final JavaPlugin plugin;
+    private final ConfigManager config;
+    private final LocationFinder locationFinder;
+    private final ChestManager chestManager;
+    private final HologramManager hologramManager;
+    private final Set<Death> pendingDeaths = new HashSet<>();
+    // Items routed to KEEP, by player UUID, until the player respawns
+    private final Map<UUID, KeptItems> keptItems = new HashMap<>();
+    // Deaths waiting for the next batch, and deaths whose search has finished
+    private final List<Death> queuedDeaths = new ArrayList<>();
+    private final List<Death> locatedDeaths = new ArrayList<>();
+    private boolean batchScheduled;
+    private boolean startingSearches;
+
+    /**
+     * Creates a new DeathChestPipeline
+     *
+     * @param plugin The plugin instance
+     * @param config The configuration manager
+     * @param locationFinder The location finder service
+     * @param chestManager The chest manager service
+     * @param hologramManager The hologram manager service (can be null if disabled)
+     */
+    public DeathChestPipeline(JavaPlugin plugin, ConfigManager config, LocationFinder locationFinder,
+                              ChestManager chestManager, HologramManager hologramManager) {
+        this.plugin = plugin;
+        this.config = config;
+        this.locationFinder = locationFinder;
+        this.chestManager = chestManager;
+        this.hologramManager = hologramManager;
+    }
+
+    /**
+     * Routes the drops of a death by the item rules and queues the death for the next batch.
+     * Dropped items stay in the event, kept items are held until the player respawns, and
+     * the rest is taken for the chest.
+     *
+     * @param event The player death event
+     */
+    public void process(PlayerDeathEvent event) {
+        Player player = event.getEntity();
+        ItemRules rules = config.getItemRules();
+        List<ItemStack> drops = event.getDrops();
+        List<ItemStack> chestItems = new ArrayList<>(drops.size());
+        List<ItemStack> dropped = new ArrayList<>();
+        List<ItemStack> kept = new ArrayList<>();
+        for (ItemStack item : drops) {
+            if (item == null || item.getType() == Material.AIR) {
+                continue;
+            }
+            // Without rules everything goes into the chest
+            if (rules.isEmpty()) {
+                chestItems.add(item);
+                continue;
+            }
+            switch (rules.route(item)) {
+                case CHEST -> chestItems.add(item);
+                case DROP -> dropped.add(item);
+                case KEEP -> kept.add(item);
+                case DESTROY -> { }
+            }
+        }
+        drops.clear();
+        drops.addAll(dropped);
+        if (!kept.isEmpty()) {
+            keptItems.computeIfAbsent(player.getUniqueId(), id -> new KeptItems(player.getLocation())).items.addAll(kept);
+        }
+
+        int experience = config.shouldStoreExperience() ? event.getDroppedExp() : 0;
+        if (chestItems.isEmpty() && experience == 0) {
+            return;
+        }
+        Death death = new Death(player, player.getLocation(), chestItems, experience);
+        if (experience > 0) {
+            event.setDroppedExp(0);
+        }
+        pendingDeaths.add(death);
+        queuedDeaths.add(death);
+
+        if (!batchScheduled) {
+            batchScheduled = true;
+            plugin.getServer().getScheduler().runTask(plugin, this::runBatch);
+        }
+    }
+
+    /**
+     * Gives a respawning player the items kept from their death, on the next tick once the
+     * respawn is complete. Items that do not fit are dropped at the player's feet.
+     *
+     * @param player The respawning player
+     */
+    public void restoreKeptItems(Player player) {
+        KeptItems kept = keptItems.remove(player.getUniqueId());
+        if (kept == null) {
+            return;
+        }
+
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (!player.isOnline()) {
+                // Keep them for the next respawn
+                keptItems.merge(player.getUniqueId(), kept, KeptItems::merge);
+                return;
+            }
+            for (ItemStack leftover : player.getInventory().addItem(kept.items.toArray(new ItemStack[0])).values()) {
+                player.getWorld().dropItemNaturally(player.getLocation(), leftover);
+            }
+        });
+    }
+
+    /**
+     * Drops the items and experience of every death still waiting for a chest, and the kept
+     * items of players who have not respawned yet. Called when the plugin is disabled so
+     * nothing is lost.
+     */
+    public void releasePendingDeaths() {
+        for (Death death : pendingDeaths) {
+            death.release(death.location);
+        }
+        for (KeptItems kept : keptItems.values()) {
+            World world = kept.location.getWorld();
+            if (world != null) {
+                for (ItemStack item : kept.items) {
+                    world.dropItemNaturally(kept.location, item);
+                }
+            }
+        }
+        keptItems.clear();
+        pendingDeaths.clear();
+        queuedDeaths.clear();
+        locatedDeaths.clear();
+    }
+
+    /**
+     * Starts the searches of every queued death, then places the chests of those that
+     * finished straight away
+     */
+    private void runBatch() {
+        batchScheduled = false;
+        List<Death> batch = new ArrayList<>(queuedDeaths);
+        queuedDeaths.clear();
+
+        boolean async = "ASYNC".equals(config.getLocationSearchMode());
+        long budgetStart = System.nanoTime();
+        startingSearches = true;
+        try {
+            for (Death death : batch) {
+                CompletableFuture<Location> search = search(death, async, budgetStart);
+                if (!search.isDone() && !async && config.sendSearchingMessage()) {
+                    death.player.sendMessage(ChatColor.translateAlternateColorCodes('&', config.getSearchingMessage()));
+                }
+            }
+        } finally {
+            startingSearches = false;
+        }
+        flush();
+    }
+
+    /**
+     * Starts the search stage of a death. Its time is measured until the location is known,
+     * including any ticks the search waits between slices.
+     */
+    private CompletableFuture<Location> search(Death death, boolean async, long budgetStart) {
+        long startTime = System.nanoTime();
+        CompletableFuture<Location> search = async
+            ? locationFinder.findChestLocationAsync(death.location, death.player)
+            : locationFinder.findChestLocationSliced(death.location, death.player, budgetStart);
+        return search.whenComplete((chestLocation, error) -> {
+            death.stageNanos[Stage.SEARCH.ordinal()] = System.nanoTime() - startTime;
+            located(death, chestLocation, error);
+        });
+    }
+
+    /**
+     * Collects a finished search. Searches finishing outside a batch are placed straight away,
+     * while their location is still claimed.
+     */
+    private void located(Death death, Location chestLocation, Throwable error) {
+        if (!pendingDeaths.contains(death)) {
+            // Already released during shutdown
+            return;
+        }
+        if (error != null) {
+            plugin.getLogger().warning("Error searching for a death chest location for " + death.player.getName() + ": " + error.getMessage());
+        }
+
+        death.chestLocation = chestLocation;
+        locatedDeaths.add(death);
+        if (!startingSearches) {
+            flush();
+        }
+    }
+
+    /**
+     * Places the chests of every located death, then plays the effects and sends the messages
+     * of the whole batch
+     */
+    private void flush() {
+        if (locatedDeaths.isEmpty()) {
+            return;
+        }
+        List<Death> batch = new ArrayList<>(locatedDeaths);
+        locatedDeaths.clear();
+
+        long[] batchNanos = new long[Stage.values().length];
+        List<Death> placed = new ArrayList<>(batch.size());
+        for (Death death : batch) {
+            pendingDeaths.remove(death);
+            if (death.chestLocation == null || !isStillValid(death.chestLocation)) {
+                sendInvalidLocationMessage(death);
+                death.release(death.location);
+                continue;
+            }
+
+            try {
+                runStage(Stage.COMPACT, death, this::compact);
+                runStage(Stage.RESERVE, death, this::reserve);
+                runStage(Stage.MATERIALIZE, death, this::materialize);
+                runStage(Stage.FILL, death, this::fill);
+                runStage(Stage.DECORATE, death, this::decorate);
+                runStage(Stage.PERSIST, death, this::persist);
+                placed.add(death);
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("Error creating a death chest for " + death.player.getName() + ": " + e.getMessage());
+                rollBack(death);
+            }
+            // Drop anything that did not end up in the chest
+            death.release(death.chestLocation);
+
+            for (int i = 0; i < batchNanos.length; i++) {
+                batchNanos[i] += death.stageNanos[i];
+            }
+        }
+
+        long startTime = System.nanoTime();
+        playEffects(placed);
+        batchNanos[Stage.DECORATE.ordinal()] += System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (Death death : placed) {
+            notify(death);
+        }
+        batchNanos[Stage.NOTIFY.ordinal()] += System.nanoTime() - startTime;
+
+        if (config.isDebugEnabled()) {
+            StringBuilder timings = new StringBuilder();
+            for (Stage stage : Stage.values()) {
+                if (timings.length() > 0) {
+                    timings.append(", ");
+                }
+                timings.append(stage.name().toLowerCase())
+                    .append(' ')
+                    .append(String.format("%.2fms", batchNanos[stage.ordinal()] / 1_000_000.0));
+            }
+            plugin.getLogger().info("Created " + placed.size() + " of " + batch.size() + " death chests (" + timings + ")");
+        }
+    }
+
+    /**
+     * Checks a located position against the live world once more, in case something was
+     * built there since the search looked at it
+     */
+    private boolean isStillValid(Location chestLocation) {
+        World world = chestLocation.getWorld();
+        return world != null && LocationFinder.isValidChestLocation(new WorldBlockView(world),
+            BlockPos.pack(chestLocation.getBlockX(), chestLocation.getBlockY(), chestLocation.getBlockZ()));
+    }
+
+    /**
+     * Removes a chest whose creation failed after it was placed, taking back whatever was
+     * already put in it so everything is dropped with the rest of the items
+     */
+    private void rollBack(Death death) {
+        if (!death.chestPlaced) {
+            return;
+        }
+        death.experienceStored = false;
+
+        try {
+            Block chestBlock = death.chestLocation.getBlock();
+            if (chestBlock.getState() instanceof Chest chest) {
+                // A connected chest's inventory covers both halves
+                Inventory inventory = chest.getInventory();
+                List<ItemStack> recovered = new ArrayList<>(death.items);
+                for (ItemStack item : inventory.getContents()) {
+                    if (item != null) {
+                        recovered.add(item);
+                    }
+                }
+                inventory.clear();
+                death.items = recovered;
+            }
+
+            // Quietly, since the player never saw this chest
+            chestManager.discardChest(chestBlock, death.partnerLocation != null ? death.partnerLocation.getBlock() : null);
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("Error removing a failed death chest at " + formatLocation(death.chestLocation) + ": " + e.getMessage());
+        }
+    }
+
+    private void runStage(Stage stage, Death death, Consumer<Death> action) {
+        long startTime = System.nanoTime();
+        try {
+            action.accept(death);
+        } finally {
+            death.stageNanos[stage.ordinal()] = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Merges the partial stacks of the items, so the chest size is chosen by the slots the
+     * items really need rather than by the number of drops. The chest does not exist yet, so
+     * stacks are limited by each item's own maximum.
+     */
+    private void compact(Death death) {
+        boolean doubleChest = "DOUBLE_CHEST".equalsIgnoreCase(config.getOverflowBehavior());
+        death.layout = new InventoryLayout(doubleChest ? DOUBLE_CHEST_SIZE : SINGLE_CHEST_SIZE, Integer.MAX_VALUE);
+        death.layout.addAll(death.items);
+    }
+
+    /**
+     * Claims a second chest position next to the found one if the compacted items need a
+     * double chest. The found position itself was claimed by the search.
+     */
+    private void reserve(Death death) {
+        if (death.layout.getUsedSlots() > SINGLE_CHEST_SIZE) {
+            death.partnerLocation = locationFinder.reserveAdjacent(death.chestLocation, death.player);
+        }
+    }
+
+    /**
+     * Places the chest blocks and stores the owner, expiry time and experience in them
+     */
+    private void materialize(Death death) {
+        Block chestBlock = death.chestLocation.getBlock();
+        chestBlock.setType(Material.CHEST);
+        death.chestPlaced = true;
+
+        Block partnerBlock = null;
+        if (death.partnerLocation != null) {
+            partnerBlock = death.partnerLocation.getBlock();
+            partnerBlock.setType(Material.CHEST);
+            chestManager.connectChests(chestBlock, partnerBlock);
+        }
+
+        death.expiryTime = config.getChestLifetime() > 0
+            ? System.currentTimeMillis() + config.getChestLifetime() * 60000L : 0;
+        String customName = config.shouldNameChest() ? death.player.getName() + "'s Death Chest" : null;
+
+        boolean tagged = chestManager.tagChest(chestBlock, death.player.getUniqueId(), death.expiryTime, death.experience, customName);
+        death.experienceStored = tagged && death.experience > 0;
+        if (!tagged) {
+            throw new IllegalStateException("the chest block at " + formatLocation(death.chestLocation) + " could not be tagged");
+        }
+        if (partnerBlock != null) {
+            chestManager.tagChest(partnerBlock, death.player.getUniqueId(), death.expiryTime, 0, customName);
+        }
+    }
+
+    /**
+     * Writes the compacted layout to the chest's contents once. Items that do not fit, for
+     * example when no second chest could be placed, are kept as the leftovers.
+     */
+    private void fill(Death death) {
+        if (!(death.chestLocation.getBlock().getState() instanceof Chest chest)) {
+            return;
+        }
+
+        // A connected chest's inventory covers both halves
+        Inventory inventory = chest.getInventory();
+        ItemStack[] planned = death.layout.getContents();
+        int size = inventory.getSize();
+
+        List<ItemStack> leftovers = new ArrayList<>();
+        for (int slot = size; slot < death.layout.getUsedSlots(); slot++) {
+            leftovers.add(planned[slot]);
+        }
+        leftovers.addAll(death.layout.getLeftovers());
+
+        // The items belong to the chest from here on, so a later failure takes them back from it
+        inventory.setContents(Arrays.copyOf(planned, size));
+        death.items = leftovers;
+    }
+
+    /**
+     * Adds the sign and hologram
+     */
+    private void decorate(Death death) {
+        if (config.isSignEnabled()) {
+            createSign(death.chestLocation, death.player.getName());
+        }
+
+        if (hologramManager != null && config.isHologramEnabled()) {
+            hologramManager.createHologram(death.chestLocation, death.player.getName(), death.expiryTime);
+        }
+    }
+
+    /**
+     * Plays the creation effects once per chunk that received chests, centred on them and
+     * spread over their extent
+     */
+    private void playEffects(List<Death> placed) {
+        Map<World, Map<Long, List<Location>>> areas = new LinkedHashMap<>();
+        for (Death death : placed) {
+            Location location = death.chestLocation;
+            long chunkKey = ((long) (location.getBlockX() >> 4) << 32) | ((location.getBlockZ() >> 4) & 0xFFFFFFFFL);
+            areas.computeIfAbsent(location.getWorld(), world -> new LinkedHashMap<>())
+                .computeIfAbsent(chunkKey, key -> new ArrayList<>())
+                .add(location);
+        }
+
+        for (Map.Entry<World, Map<Long, List<Location>>> entry : areas.entrySet()) {
+            World world = entry.getKey();
+            for (List<Location> chests : entry.getValue().values()) {
+                double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+                double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+                for (Location chest : chests) {
+                    minX = Math.min(minX, chest.getBlockX());
+                    minY = Math.min(minY, chest.getBlockY());
+                    minZ = Math.min(minZ, chest.getBlockZ());
+                    maxX = Math.max(maxX, chest.getBlockX());
+                    maxY = Math.max(maxY, chest.getBlockY());
+                    maxZ = Math.max(maxZ, chest.getBlockZ());
+                }
+
+                Location centre = new Location(world, (minX + maxX) / 2 + 0.5, (minY + maxY) / 2 + 0.5, (minZ + maxZ) / 2 + 0.5);
+                int count = Math.min(50 * chests.size(), 200);
+                world.spawnParticle(Particle.FLAME, centre, count,
+                    (maxX - minX) / 2 + 0.5, (maxY - minY) / 2 + 0.5, (maxZ - minZ) / 2 + 0.5, 0.1);
+                world.playSound(centre, Sound.BLOCK_ENCHANTMENT_TABLE_USE, 1.0f, 1.0f);
+                world.playSound(centre, Sound.BLOCK_CHEST_CLOSE, 1.0f, 0.5f);
+            }
+        }
+    }
+
+    /**
+     * Tells the player where the chest is
+     */
+    private void notify(Death death) {
+        if (config.sendCreationMessage()) {
+            Location chestLocation = death.chestLocation;
+            String message = config.getCreationMessage()
+                    .replace("{location}", formatLocation(chestLocation))
+                    .replace("{x}", String.valueOf(chestLocation.getBlockX()))
+                    .replace("{y}", String.valueOf(chestLocation.getBlockY()))
+                    .replace("{z}", String.valueOf(chestLocation.getBlockZ()));
+            death.player.sendMessage(ChatColor.translateAlternateColorCodes('&', message));
+        }
+    }
+
+    /**
+     * Registers the chest blocks so they are protected, expire and are saved
+     */
+    private void persist(Death death) {
+        chestManager.registerChest(death.chestLocation,
+            new ChestData(death.player.getUniqueId(), death.experience, death.expiryTime));
+        if (death.partnerLocation != null) {
+            chestManager.registerChest(death.partnerLocation,
+                new ChestData(death.player.getUniqueId(), 0, death.expiryTime));
+        }
+    }
+
+    private void sendInvalidLocationMessage(Death death) {
+        if (config.sendInvalidLocationMessage()) {
+            death.player.sendMessage(ChatColor.translateAlternateColorCodes('&', config.getInvalidLocationMessage()));
+        }
+    }
+
+    /**
+     * Creates a sign on the front of the chest
+     *
+     * @param chestLocation The location of the chest
+     * @param playerName The name of the player who died
+     */
+    private void createSign(Location chestLocation, String playerName) {
+        World world = chestLocation.getWorld();
+        if (world == null) {
+            return;
+        }
+
+        // Get the chest block
+        Block chestBlock = chestLocation.getBlock();
+
+        // Get the chest's facing direction if possible
+        BlockFace chestFacing = null;
+        if (chestBlock.getBlockData() instanceof org.bukkit.block.data.Directional) {
+            chestFacing = ((org.bukkit.block.data.Directional) chestBlock.getBlockData()).getFacing();
+        }
+
+        // If we couldn't determine the chest's facing, use our priority order
+        if (chestFacing == null) {
+            // Determine the best direction to place the sign
+            chestFacing = determineSignDirection(chestBlock);
+            if (chestFacing == null) {
+                // If no valid direction found, don't place a sign
+                return;
+            }
+        }
+
+        // Get the block in front of the chest
+        Block signBlock = chestBlock.getRelative(chestFacing);
+        if (signBlock.getType() != Material.AIR) {
+            // If the block is not air, don't place a sign
+            return;
+        }
+
+        // Set the wall sign block with correct orientation
+        Material signMaterial = getWallSignMaterial();
+        signBlock.setType(signMaterial);
+
+        // Set the sign direction
+        org.bukkit.block.data.type.WallSign signData =
+            (org.bukkit.block.data.type.WallSign) signBlock.getBlockData();
+
+        // The sign should be attached to the chest and face outward
+        // So the sign's facing direction should be the same as the chest's facing
+        signData.setFacing(chestFacing);
+        signBlock.setBlockData(signData);
+
+        // Log debug information if enabled
+        if (config.isDebugEnabled()) {
+            plugin.getLogger().info("Placed death chest sign at " + signBlock.getLocation() +
+                " facing " + chestFacing + " in front of chest at " + chestLocation);
+        }
+
+        // Update the sign text
+        if (signBlock.getState() instanceof Sign) {
+            Sign sign = (Sign) signBlock.getState();
+
+            // Get current date for the date placeholder
+            SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+            String currentDate = dateFormat.format(new Date());
+
+            // Format the text
+            String[] lines = config.getSignText();
+            for (int i = 0; i < lines.length && i < 4; i++) {
+                String line = lines[i]
+                        .replace("{player}", playerName)
+                        .replace("{date}", currentDate)
+                        .replace("&", "§");
+                sign.setLine(i, line);
+            }
+
+            sign.update();
+        }
+    }
+
+    /**
+     * Determines the best direction to place a sign based on surrounding blocks
+     *
+     * @param chestBlock The chest block
+     * @return The best direction to place the sign, or null if no valid direction
+     */
+    private BlockFace determineSignDirection(Block chestBlock) {
+        // First try to determine the chest's facing direction
+        if (chestBlock.getBlockData() instanceof org.bukkit.block.data.Directional) {
+            BlockFace chestFacing = ((org.bukkit.block.data.Directional) chestBlock.getBlockData()).getFacing();
+
+            // Check if the block in front of the chest is air
+            Block frontBlock = chestBlock.getRelative(chestFacing);
+            if (frontBlock.getType() == Material.AIR) {
+                return chestFacing;
+            }
+        }
+
+        // If we couldn't use the chest's facing, use our priority order
+        // Priority order for sign placement (south is most visible in default view)
+        BlockFace[] priorityOrder = new BlockFace[]{
+            BlockFace.SOUTH, BlockFace.EAST, BlockFace.NORTH, BlockFace.WEST
+        };
+
+        // Check in priority order
+        for (BlockFace face : priorityOrder) {
+            Block adjacent = chestBlock.getRelative(face);
+            if (adjacent.getType() == Material.AIR) {
+                return face;
+            }
+        }
+
+        // If no direction has air, return null
+        return null;
+    }
+
+    /**
+     * Gets the appropriate wall sign material
+     *
+     * @return The wall sign material
+     */
+    private Material getWallSignMaterial() {
+        // Default to oak wall sign, but could be made configurable in the future
+        try {
+            // Try to get the configured sign material if it exists
+            String signType = config.getSignMaterial();
+            if (signType != null && !signType.isEmpty()) {
+                Material material = Material.valueOf(signType + "_WALL_SIGN");
+                if (material != null) {
+                    return material;
+                }
+            }
+        } catch (Exception e) {
+            // If any error occurs, fall back to oak
+            if (config.isDebugEnabled()) {
+                plugin.getLogger().warning("Error getting sign material: " + e.getMessage());
+            }
+        }
+
+        // Default to oak wall sign
+        return Material.OAK_WALL_SIGN;
+    }
+
+    /**
+     * Formats a location into a readable string
+     *
+     * @param location The location to format
+     * @return A formatted string representing the location
+     */
+    private String formatLocation(Location location) {
+        return String.format("x:%d, y:%d, z:%d in %s",
+                location.getBlockX(),
+                location.getBlockY(),
+                location.getBlockZ(),
+                location.getWorld().getName());
+    }
+
+    /**
+     * One death moving through the pipeline. Until the fill stage the items are the drops;
+     * afterwards they are the leftovers that did not go into the chest.
+     */
+    private static final class Death {
+        private final Player player;
+        private final Location location;
+        private final int experience;
+        private final long[] stageNanos = new long[Stage.values().length];
+        private InventoryLayout layout;
+        private List<ItemStack> items;
+        private boolean experienceStored;
+        private boolean chestPlaced;
+        private Location chestLocation;
+        private Location partnerLocation;
+        private long expiryTime;
+
+        private Death(Player player, Location location, List<ItemStack> items, int experience) {
+            this.player = player;
+            this.location = location;
+            this.items = items;
+            this.experience = experience;
+        }
+
+        /**
+         * Drops the items and any experience not stored in a chest
+         *
+         * @param dropLocation Where to drop them
+         */
+        private void release(Location dropLocation) {
+            World world = dropLocation.getWorld();
+            if (world == null) {
+                return;
+            }
+            for (ItemStack item : items) {
+                if (item != null && item.getType() != Material.AIR) {
+                    world.dropItemNaturally(dropLocation, item);
+                }
+            }
+            if (experience > 0 && !experienceStored) {
+                world.spawn(dropLocation, ExperienceOrb.class).setExperience(experience);
+            }
+        }
+    }
+
+    /**
+     * Items kept from a death until the player respawns, and where to drop them if the
+     * plugin is disabled first
+     */
+    private static final class KeptItems {
+        private final Location location;
+        private final List<ItemStack> items = new ArrayList<>();
+
+        private KeptItems(Location location) {
+            this.location = location;
+        }
+
+        private static KeptItems merge(KeptItems first, KeptItems second) {
+            first.items.addAll(second.items);
+            return first;
+        }
+    }
+}
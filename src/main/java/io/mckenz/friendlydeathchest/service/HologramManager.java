@@ -71,6 +71,8 @@ public class HologramManager {
         hologram.setVisible(false);
         hologram.setSmall(true);
         hologram.setMarker(true);
+        // Not saved with the chunk; holograms are recreated when the chunk loads
+        hologram.setPersistent(false);
         
         // Store the hologram
         holograms.put(location, hologram);
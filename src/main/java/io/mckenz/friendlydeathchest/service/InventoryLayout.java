@@ -0,0 +1,111 @@
+package io.mckenz.friendlydeathchest.service;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans the contents of an empty inventory before anything is written to it.
+ * <p>
+ * Items are laid out in one pass: each one is merged into the open stack of the same kind,
+ * if there is one, and the rest goes into the next empty slot. Kinds are looked up by a
+ * single-item copy, whose equality matches {@link ItemStack#isSimilar(ItemStack)}, so merging
+ * does not rescan the slots. The finished contents are written with a single
+ * {@link org.bukkit.inventory.Inventory#setContents(ItemStack[])}.
+ */
+final class InventoryLayout {
+    private final ItemStack[] contents;
+    private final int maxStackSize;
+    private final List<ItemStack> leftovers = new ArrayList<>();
+    // The slot of the one stack of each kind that still has room
+    private final Map<ItemStack, Integer> openStacks = new HashMap<>();
+    private int nextEmpty;
+
+    /**
+     * Creates an empty layout
+     *
+     * @param size The number of slots
+     * @param maxStackSize The inventory's stack size limit
+     */
+    InventoryLayout(int size, int maxStackSize) {
+        this.contents = new ItemStack[size];
+        this.maxStackSize = maxStackSize;
+    }
+
+    /**
+     * Lays out items in order. The items themselves are not modified.
+     *
+     * @param items The items to add
+     */
+    void addAll(List<ItemStack> items) {
+        for (ItemStack item : items) {
+            add(item);
+        }
+    }
+
+    private void add(ItemStack item) {
+        int amount = item.getAmount();
+        int limit = Math.max(1, Math.min(item.getMaxStackSize(), maxStackSize));
+        ItemStack kind = item.clone();
+        kind.setAmount(1);
+
+        Integer open = openStacks.get(kind);
+        if (open != null) {
+            ItemStack stack = contents[open];
+            int moved = Math.min(limit - stack.getAmount(), amount);
+            stack.setAmount(stack.getAmount() + moved);
+            amount -= moved;
+            if (stack.getAmount() >= limit) {
+                openStacks.remove(kind);
+            }
+        }
+
+        while (amount > 0 && nextEmpty < contents.length) {
+            int placed = Math.min(limit, amount);
+            ItemStack stack = item.clone();
+            stack.setAmount(placed);
+            contents[nextEmpty] = stack;
+            if (placed < limit) {
+                openStacks.put(kind, nextEmpty);
+            }
+            nextEmpty++;
+            amount -= placed;
+        }
+
+        if (amount > 0) {
+            ItemStack rest = item.clone();
+            rest.setAmount(amount);
+            leftovers.add(rest);
+        }
+    }
+
+    /**
+     * Gets the planned contents
+     *
+     * @return One entry per slot, null for empty slots
+     */
+    ItemStack[] getContents() {
+        return contents;
+    }
+
+    /**
+     * Gets the number of slots in use. Slots are filled in order, so these are the first ones.
+     *
+     * @return The number of used slots
+     */
+    int getUsedSlots() {
+        return nextEmpty;
+    }
+
+    /**
+     * Gets the items that did not fit
+     *
+     * @return The leftover items
+     */
+    List<ItemStack> getLeftovers() {
+        return leftovers;
+    }
+}
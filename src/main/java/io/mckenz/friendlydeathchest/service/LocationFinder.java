@@ -1,33 +1,50 @@
 package io.mckenz.friendlydeathchest.service;
 
 import io.mckenz.friendlydeathchest.config.ConfigManager;
+import io.mckenz.friendlydeathchest.protection.ProtectionManager;
+import io.mckenz.friendlydeathchest.utils.BlockPos;
+import io.mckenz.friendlydeathchest.utils.LongObjectHashMap;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
 
 /**
  * Responsible for finding appropriate chest locations
  */
 public class LocationFinder {
+    private final JavaPlugin plugin;
     private final ConfigManager config;
     private ChestManager chestManager;
+    private final PlacementReservations reservations;
+    private final Deque<SlicedSearch> runningSearches = new ArrayDeque<>();
+    private BukkitTask searchTask;
     
-    private static final BlockFace[] HORIZONTAL_FACES = {
-        BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST
+    private static final int[][] HORIZONTAL_OFFSETS = {
+        {0, -1}, {1, 0}, {0, 1}, {-1, 0}
     };
 
     /**
      * Creates a new LocationFinder
      * 
+     * @param plugin The plugin instance
      * @param config The configuration manager
      * @param chestManager The chest manager
      */
-    public LocationFinder(ConfigManager config, ChestManager chestManager) {
+    public LocationFinder(JavaPlugin plugin, ConfigManager config, ChestManager chestManager) {
+        this.plugin = plugin;
         this.config = config;
         this.chestManager = chestManager;
+        this.reservations = new PlacementReservations(plugin);
     }
 
     /**
@@ -41,7 +58,9 @@ public class LocationFinder {
     }
     
     /**
-     * Finds a suitable location for a death chest
+     * Finds a suitable location for a death chest, searching the whole radius at once. The
+     * location is claimed for the rest of the tick, so other searches in the same tick keep
+     * clear of it.
      * 
      * @param deathLocation The location where the player died
      * @param player The player who died (for permission checks)
@@ -53,84 +72,305 @@ public class LocationFinder {
             return null;
         }
         
-        // Get the max search radius from config
-        int maxRadius = config.getMaxSearchRadius();
-        String invalidBehavior = config.getInvalidLocationBehavior();
+        long[] found = {0};
+        LongObjectHashMap<Boolean> decisions = new LongObjectHashMap<>();
+        LocationSearch search = newSearch(deathLocation, pos -> {
+            if (canPlace(player, world, pos, decisions)) {
+                found[0] = pos;
+                return true;
+            }
+            return false;
+        });
+        search.step(reservations.cachedView(world), () -> false);
         
-        // Try the exact death location first
-        Block block = deathLocation.getBlock();
-        if (isValidChestLocation(block, player)) {
-            return block.getLocation();
+        // If we get here without success, no valid location was found within the radius
+        if (!search.isFound()) {
+            return null;
+        }
+        reservations.claim(world, found[0]);
+        return toLocation(world, found[0]);
+    }
+    
+    /**
+     * Finds a suitable location for a death chest on the main thread, spending at most
+     * location-search-tick-budget per tick on it. Searches that do not finish within the
+     * calling tick continue on the following ticks; the returned future is already complete
+     * if the search finished straight away. Like {@link #findChestLocation(Location, Player)},
+     * the location found is claimed for the tick.
+     * 
+     * @param deathLocation The location where the player died
+     * @param player The player who died (for permission checks), or null
+     * @return A future completed on the main thread with a suitable location, or null if none found
+     */
+    public CompletableFuture<Location> findChestLocationSliced(Location deathLocation, Player player) {
+        return findChestLocationSliced(deathLocation, player, System.nanoTime());
+    }
+    
+    /**
+     * Like {@link #findChestLocationSliced(Location, Player)}, but the first slice shares a
+     * tick budget that started earlier, so a batch of searches started in the same tick
+     * spends at most one budget between them.
+     * 
+     * @param deathLocation The location where the player died
+     * @param player The player who died (for permission checks), or null
+     * @param budgetStart When this tick's budget started, from {@link System#nanoTime()}
+     * @return A future completed on the main thread with a suitable location, or null if none found
+     */
+    public CompletableFuture<Location> findChestLocationSliced(Location deathLocation, Player player, long budgetStart) {
+        World world = deathLocation.getWorld();
+        if (world == null) {
+            return CompletableFuture.completedFuture(null);
         }
         
-        // If we shouldn't search for alternatives, return null
-        if ("CANCEL".equalsIgnoreCase(invalidBehavior)) {
-            return null;
+        long[] found = {0};
+        LongObjectHashMap<Boolean> decisions = new LongObjectHashMap<>();
+        LocationSearch search = newSearch(deathLocation, pos -> {
+            if (canPlace(player, world, pos, decisions)) {
+                found[0] = pos;
+                return true;
+            }
+            return false;
+        });
+        SlicedSearch sliced = new SlicedSearch(world, search, found, new CompletableFuture<>());
+        
+        if (!stepSliced(sliced, budgetStart)) {
+            runningSearches.add(sliced);
+            startSearchTask();
+        }
+        return sliced.future;
+    }
+    
+    /**
+     * Finds a suitable location for a death chest without blocking the main thread.
+     * <p>
+     * The chunks around the death location are copied on the calling (main) thread and
+     * searched on a background thread. The candidates found are then checked again against
+     * the live world and protection plugins on the main thread, since blocks may have changed
+     * in the meantime. Chunks that are not loaded are never loaded for the search. With
+     * placement-strategy SCORED, every candidate is scored and they are tried best first. Like
+     * {@link #findChestLocation(Location, Player)}, the location found is claimed for the tick.
+     * 
+     * @param deathLocation The location where the player died
+     * @param player The player who died (for permission checks), or null
+     * @return A future completed on the main thread with a suitable location, or null if none found
+     */
+    public CompletableFuture<Location> findChestLocationAsync(Location deathLocation, Player player) {
+        World world = deathLocation.getWorld();
+        if (world == null) {
+            return CompletableFuture.completedFuture(null);
         }
         
-        // Search in a spiral pattern around the death location
-        for (int radius = 1; radius <= maxRadius; radius++) {
-            // Try locations in increasing radius
-            for (int x = -radius; x <= radius; x++) {
-                for (int z = -radius; z <= radius; z++) {
-                    // Only check the perimeter of the current radius
-                    if (Math.abs(x) != radius && Math.abs(z) != radius) {
-                        continue;
-                    }
-                    
-                    // Check this location
-                    Block testBlock = block.getRelative(x, 0, z);
-                    if (isValidChestLocation(testBlock, player)) {
-                        return testBlock.getLocation();
-                    }
-                    
-                    // Check one block above
-                    testBlock = block.getRelative(x, 1, z);
-                    if (isValidChestLocation(testBlock, player)) {
-                        return testBlock.getLocation();
-                    }
-                    
-                    // Check one block below
-                    testBlock = block.getRelative(x, -1, z);
-                    if (isValidChestLocation(testBlock, player)) {
-                        return testBlock.getLocation();
-                    }
-                }
+        int originX = deathLocation.getBlockX();
+        int originZ = deathLocation.getBlockZ();
+        // Candidates read one block beyond the search radius for the neighbouring chest check
+        int reach = getSearchRadius() + 1;
+        BlockView snapshot = reservations.claimsOver(world, reservations.capture(world,
+            originX - reach, originZ - reach, originX + reach, originZ + reach));
+        
+        boolean scored = "SCORED".equals(config.getPlacementStrategy());
+        PlacementScorer scorer = scored ? new PlacementScorer(config) : null;
+        
+        CompletableFuture<Location> result = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            LongStream.Builder candidates = LongStream.builder();
+            newSearch(deathLocation, pos -> {
+                candidates.add(pos);
+                return false;
+            }).step(snapshot, () -> false);
+            
+            long[] found = candidates.build().toArray();
+            return scored ? scorer.rank(snapshot, found, originX, deathLocation.getBlockY(), originZ) : found;
+        }).whenComplete((candidates, error) -> plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (error != null) {
+                result.completeExceptionally(new IllegalStateException("Chest location search failed", error));
+                return;
+            }
+            
+            try {
+                result.complete(claimCandidate(world, player, candidates));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }));
+        return result;
+    }
+    
+    /**
+     * Claims the first candidate that is still valid in the live world. Main thread only.
+     * 
+     * @param world The world
+     * @param player The player who died (for permission checks), or null
+     * @param candidates The packed candidate positions, best first
+     * @return The claimed location, or null if no candidate is still valid
+     */
+    private Location claimCandidate(World world, Player player, long[] candidates) {
+        // Searches that finished since the snapshot may have claimed some candidates
+        BlockView live = reservations.claimsOver(world, new WorldBlockView(world));
+        LongObjectHashMap<Boolean> decisions = new LongObjectHashMap<>();
+        for (long pos : candidates) {
+            if (isValidChestLocation(live, pos) && canPlace(player, world, pos, decisions)) {
+                reservations.claim(world, pos);
+                return toLocation(world, pos);
             }
         }
+        return null;
+    }
+    
+    /**
+     * Finds and claims a block next to a claimed chest location where a second chest can be
+     * placed to make a double chest. Reuses the block reads of this tick's searches.
+     * 
+     * @param chestLocation The claimed chest location
+     * @param player The player who died (for permission checks), or null
+     * @return The second chest location, or null if no neighbour is free
+     */
+    public Location reserveAdjacent(Location chestLocation, Player player) {
+        World world = chestLocation.getWorld();
+        if (world == null) {
+            return null;
+        }
         
-        // If we get here, no valid location was found within the radius
+        BlockView view = reservations.cachedView(world);
+        int x = chestLocation.getBlockX();
+        int y = chestLocation.getBlockY();
+        int z = chestLocation.getBlockZ();
+        LongObjectHashMap<Boolean> decisions = new LongObjectHashMap<>();
+        for (int[] offset : HORIZONTAL_OFFSETS) {
+            int partnerX = x + offset[0];
+            int partnerZ = z + offset[1];
+            Material type = view.getType(partnerX, y, partnerZ);
+            Material below = view.getType(partnerX, y - 1, partnerZ);
+            if (type == null || !isReplaceable(type) || below == null || !below.isSolid()
+                    || hasOtherChestNearby(view, partnerX, y, partnerZ, x, z)) {
+                continue;
+            }
+            
+            long pos = BlockPos.pack(partnerX, y, partnerZ);
+            if (canPlace(player, world, pos, decisions)) {
+                reservations.claim(world, pos);
+                return toLocation(world, pos);
+            }
+        }
         return null;
     }
     
     /**
-     * Checks if a block location is valid for placing a chest
+     * Checks for chests next to a position other than the one it will be joined to
+     */
+    private static boolean hasOtherChestNearby(BlockView view, int x, int y, int z, int partnerX, int partnerZ) {
+        for (int[] offset : HORIZONTAL_OFFSETS) {
+            int nearX = x + offset[0];
+            int nearZ = z + offset[1];
+            if ((nearX != partnerX || nearZ != partnerZ) && view.getType(nearX, y, nearZ) == Material.CHEST) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private LocationSearch newSearch(Location deathLocation, LongPredicate visitor) {
+        return new LocationSearch(deathLocation.getBlockX(), deathLocation.getBlockY(), deathLocation.getBlockZ(),
+            getSearchRadius(), config.getColumnSearchLimit(), visitor);
+    }
+    
+    /**
+     * Continues the running sliced searches, oldest first, until this tick's budget is spent
+     */
+    private void runSlicedSearches() {
+        long startTime = System.nanoTime();
+        while (!runningSearches.isEmpty() && System.nanoTime() - startTime < config.getLocationSearchTickBudget()) {
+            if (stepSliced(runningSearches.peek(), startTime)) {
+                runningSearches.poll();
+            }
+        }
+        
+        if (runningSearches.isEmpty() && searchTask != null) {
+            searchTask.cancel();
+            searchTask = null;
+        }
+    }
+    
+    /**
+     * Runs one slice of a search and completes its future if it finished
      * 
-     * @param block The block to check
-     * @param player The player to check permissions for, or null to skip permission checks
-     * @return true if the location is valid
+     * @param sliced The search
+     * @param startTime When this tick's budget started, from {@link System#nanoTime()}
+     * @return true if the search finished
      */
-    private boolean isValidChestLocation(Block block, Player player) {
-        // Must be air or a replaceable block
-        if (!isReplaceable(block.getType())) {
+    private boolean stepSliced(SlicedSearch sliced, long startTime) {
+        long budget = config.getLocationSearchTickBudget();
+        boolean done;
+        try {
+            // A world unloaded mid-search has nowhere left to put the chest
+            if (plugin.getServer().getWorld(sliced.world.getUID()) == null) {
+                sliced.future.complete(null);
+                return true;
+            }
+            done = sliced.search.step(reservations.cachedView(sliced.world), () -> System.nanoTime() - startTime >= budget);
+        } catch (RuntimeException e) {
+            sliced.future.completeExceptionally(e);
+            return true;
+        }
+        
+        if (!done) {
             return false;
         }
+        if (sliced.search.isFound()) {
+            reservations.claim(sliced.world, sliced.found[0]);
+            sliced.future.complete(toLocation(sliced.world, sliced.found[0]));
+        } else {
+            sliced.future.complete(null);
+        }
+        return true;
+    }
+    
+    private void startSearchTask() {
+        if (searchTask == null) {
+            searchTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::runSlicedSearches, 1L, 1L);
+        }
+    }
+    
+    /**
+     * Gets the radius to search around the death location
+     * 
+     * @return The search radius, 0 if alternatives should not be searched
+     */
+    private int getSearchRadius() {
+        // If we shouldn't search for alternatives, only the death location is tried
+        if ("CANCEL".equalsIgnoreCase(config.getInvalidLocationBehavior())) {
+            return 0;
+        }
+        return config.getMaxSearchRadius();
+    }
+    
+    /**
+     * Checks if a single block location is valid for placing a chest. Used to recheck
+     * candidates found in a snapshot; searches evaluate whole volumes with {@link PlacementMask}.
+     * 
+     * @param view The blocks to check against
+     * @param pos The packed block position
+     * @return true if the location is valid
+     */
+    static boolean isValidChestLocation(BlockView view, long pos) {
+        int x = BlockPos.unpackX(pos);
+        int y = BlockPos.unpackY(pos);
+        int z = BlockPos.unpackZ(pos);
         
-        // Must have a solid block beneath
-        if (!block.getRelative(BlockFace.DOWN).getType().isSolid()) {
+        // Must be air or a replaceable block
+        Material type = view.getType(x, y, z);
+        if (type == null || !isReplaceable(type)) {
             return false;
         }
         
-        // Check if player has permission to build here
-        if (player != null && chestManager != null && 
-            config.shouldRespectProtectionPlugins() && 
-            !chestManager.canBuild(player, block.getLocation())) {
+        // Must have a solid block beneath
+        Material below = view.getType(x, y - 1, z);
+        if (below == null || !below.isSolid()) {
             return false;
         }
         
         // Check for chests nearby (can't place double chests)
-        for (BlockFace face : HORIZONTAL_FACES) {
-            if (block.getRelative(face).getType() == Material.CHEST) {
+        for (int[] offset : HORIZONTAL_OFFSETS) {
+            if (view.getType(x + offset[0], y, z + offset[1]) == Material.CHEST) {
                 return false;
             }
         }
@@ -138,13 +378,46 @@ public class LocationFinder {
         return true;
     }
     
+    /**
+     * Checks if the player has permission to build at a location. Main thread only.
+     * <p>
+     * Protection plugins are first asked once per chunk section whether the whole section is
+     * denied, reusing the answer for the rest of the search (and, for a few seconds, for other
+     * searches). Candidates in any other section are checked on their own, since a claim
+     * border may run through it.
+     * 
+     * @param player The player to check permissions for, or null to skip permission checks
+     * @param world The world
+     * @param pos The packed block position
+     * @param decisions Whether each chunk section is wholly denied, for this search
+     * @return true if the chest may be placed
+     */
+    private boolean canPlace(Player player, World world, long pos, LongObjectHashMap<Boolean> decisions) {
+        if (player == null || chestManager == null || !config.shouldRespectProtectionPlugins()) {
+            return true;
+        }
+        
+        Location location = toLocation(world, pos);
+        long section = ProtectionManager.sectionKey(location);
+        Boolean sectionDenied = decisions.get(section);
+        if (sectionDenied == null) {
+            sectionDenied = chestManager.getProtectionManager().deniesWholeSection(player, location);
+            decisions.put(section, sectionDenied);
+        }
+        return !sectionDenied && chestManager.canBuild(player, location);
+    }
+    
+    private static Location toLocation(World world, long pos) {
+        return new Location(world, BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+    }
+    
     /**
      * Checks if a material is replaceable
      * 
      * @param material The material to check
      * @return true if the material is replaceable
      */
-    private boolean isReplaceable(Material material) {
+    static boolean isReplaceable(Material material) {
         return material == Material.AIR || 
                material == Material.CAVE_AIR ||
                material == Material.VOID_AIR ||
@@ -166,4 +439,21 @@ public class LocationFinder {
                block.getType() != Material.BARRIER &&
                block.getType() != Material.BEDROCK;
     }
+    
+    /**
+     * A search spread over several ticks and the future waiting for it
+     */
+    private static final class SlicedSearch {
+        private final World world;
+        private final LocationSearch search;
+        private final long[] found;
+        private final CompletableFuture<Location> future;
+
+        private SlicedSearch(World world, LocationSearch search, long[] found, CompletableFuture<Location> future) {
+            this.world = world;
+            this.search = search;
+            this.found = found;
+            this.future = future;
+        }
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,307 @@
+package io.mckenz.friendlydeathchest.service;
+
+import io.mckenz.friendlydeathchest.utils.BlockPos;
+import org.bukkit.HeightMap;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.LongPredicate;
+
+/**
+ * A chest location search that can be paused and resumed, so a large search radius can be
+ * spread over several ticks.
+ * <p>
+ * Valid positions are visited nearest first: around the death level, then on the surface
+ * and sea floor of the surrounding columns. The death location and the ring around it are
+ * tested block by block first, so a death next to a free spot costs a few reads; the
+ * surface check and the {@link PlacementMask} for the rest of the radius are only built
+ * when they fail. The search pauses whenever its time check says so and continues from the
+ * same place on the next {@link #step(BlockView, BooleanSupplier)}.
+ */
+final class LocationSearch {
+    private enum Phase { NEAR, SURFACE_CHECK, MASK, LEVELS, COLUMNS, DONE }
+
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    private final int radius;
+    private final int columnLimit;
+    private final LongPredicate visitor;
+
+    private Phase phase = Phase.NEAR;
+    private boolean aboveSurface = true;
+    private PlacementMask mask;
+    private boolean found;
+
+    // Resume points: the row of the surface check, or the ring and position on it
+    private int row;
+    private int ring;
+    private int index;
+    private int columnsVisited;
+
+    /**
+     * Creates a new search
+     *
+     * @param originX The death X coordinate
+     * @param originY The death Y coordinate
+     * @param originZ The death Z coordinate
+     * @param radius The horizontal search radius, 0 to only try the death location
+     * @param columnLimit The maximum number of columns the surface search checks
+     * @param visitor Called with each valid packed position; returning true ends the search
+     */
+    LocationSearch(int originX, int originY, int originZ, int radius, int columnLimit, LongPredicate visitor) {
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.radius = radius;
+        this.columnLimit = columnLimit;
+        this.visitor = visitor;
+    }
+
+    /**
+     * Runs the search until it finishes or time is up
+     *
+     * @param view The blocks to search; may be a different view of the same world on every step
+     * @param timeUp Checked regularly; returning true pauses the search
+     * @return true once the search has finished
+     */
+    boolean step(BlockView view, BooleanSupplier timeUp) {
+        while (phase != Phase.DONE) {
+            boolean paused = switch (phase) {
+                case NEAR -> !searchNear(view);
+                case SURFACE_CHECK -> !checkSurface(view, timeUp);
+                case MASK -> !readMask(view, timeUp);
+                case LEVELS -> !searchLevels(view, timeUp);
+                case COLUMNS -> !searchColumns(view, timeUp);
+                case DONE -> false;
+            };
+            if (paused) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the search ended at an accepted position
+     *
+     * @return true if the visitor accepted a position
+     */
+    boolean isFound() {
+        return found;
+    }
+
+    /**
+     * Tests the death location, then the ring around it at the death level, one block above
+     * and one block below, each block on its own
+     */
+    private boolean searchNear(BlockView view) {
+        if (testDirect(view, BlockPos.pack(originX, originY, originZ))) {
+            return true;
+        }
+        if (radius >= 1) {
+            for (int i = 0; i < 8; i++) {
+                int x = originX + ringX(1, i);
+                int z = originZ + ringZ(1, i);
+                if (testDirect(view, BlockPos.pack(x, originY, z))
+                        || testDirect(view, BlockPos.pack(x, originY + 1, z))
+                        || testDirect(view, BlockPos.pack(x, originY - 1, z))) {
+                    return true;
+                }
+            }
+        }
+
+        if (radius > 1) {
+            phase = Phase.SURFACE_CHECK;
+        } else {
+            startColumns();
+        }
+        return true;
+    }
+
+    /**
+     * Decides whether the death level is worth searching beyond the first ring. It is skipped when it is more than
+     * two blocks above the surface of every column in range (falling or void deaths), since
+     * no block within one level of it could hold a chest.
+     */
+    private boolean checkSurface(BlockView view, BooleanSupplier timeUp) {
+        for (; row <= 2 * radius; row++) {
+            int x = originX - radius + row;
+            for (int z = originZ - radius; z <= originZ + radius; z++) {
+                int surfaceY = view.getHighestBlockY(x, z, HeightMap.MOTION_BLOCKING_NO_LEAVES);
+                if (surfaceY != Integer.MIN_VALUE && surfaceY >= originY - 2) {
+                    aboveSurface = false;
+                    break;
+                }
+            }
+            if (!aboveSurface) {
+                break;
+            }
+            if (row < 2 * radius && timeUp.getAsBoolean()) {
+                row++;
+                return false;
+            }
+        }
+
+        if (aboveSurface) {
+            startColumns();
+        } else {
+            mask = new PlacementMask(originX, originY, originZ, radius);
+            phase = Phase.MASK;
+        }
+        return true;
+    }
+
+    private boolean readMask(BlockView view, BooleanSupplier timeUp) {
+        if (!mask.readRows(view, timeUp)) {
+            return false;
+        }
+        // Rings 0 and 1 were tested directly
+        ring = 2;
+        phase = Phase.LEVELS;
+        return true;
+    }
+
+    /**
+     * Tries rings of increasing radius at the death level, one block above and one block below
+     */
+    private boolean searchLevels(BlockView view, BooleanSupplier timeUp) {
+        for (; ring <= radius; ring++) {
+            for (int i = 0; i < 8 * ring; i++) {
+                int x = originX + ringX(ring, i);
+                int z = originZ + ringZ(ring, i);
+                if (testMasked(view, BlockPos.pack(x, originY, z))
+                        || testMasked(view, BlockPos.pack(x, originY + 1, z))
+                        || testMasked(view, BlockPos.pack(x, originY - 1, z))) {
+                    return true;
+                }
+            }
+            if (ring < radius && timeUp.getAsBoolean()) {
+                ring++;
+                return false;
+            }
+        }
+
+        startColumns();
+        return true;
+    }
+
+    /**
+     * Jumps straight to the surface and sea floor of each column, nearest columns first
+     */
+    private boolean searchColumns(BlockView view, BooleanSupplier timeUp) {
+        for (; ring <= radius; ring++, index = 0) {
+            int positions = ring == 0 ? 1 : 8 * ring;
+            while (index < positions) {
+                if (columnsVisited++ >= columnLimit) {
+                    phase = Phase.DONE;
+                    return true;
+                }
+
+                int x = originX + ringX(ring, index);
+                int z = originZ + ringZ(ring, index);
+                index++;
+                if (testColumn(view, x, z)) {
+                    return true;
+                }
+                if ((columnsVisited & 15) == 0 && timeUp.getAsBoolean()) {
+                    return false;
+                }
+            }
+        }
+
+        phase = Phase.DONE;
+        return true;
+    }
+
+    private void startColumns() {
+        ring = 0;
+        index = 0;
+        phase = radius > 0 ? Phase.COLUMNS : Phase.DONE;
+    }
+
+    /**
+     * Tests a position of the death level search. The mask may have been read on earlier
+     * ticks, so hits are checked again against the current view.
+     */
+    private boolean testMasked(BlockView view, long pos) {
+        return mask.isValid(pos) && LocationFinder.isValidChestLocation(view, pos) && accept(pos);
+    }
+
+    private boolean testDirect(BlockView view, long pos) {
+        return LocationFinder.isValidChestLocation(view, pos) && accept(pos);
+    }
+
+    private boolean testColumn(BlockView view, int x, int z) {
+        int surfaceY = view.getHighestBlockY(x, z, HeightMap.MOTION_BLOCKING_NO_LEAVES);
+        int floorY = view.getHighestBlockY(x, z, HeightMap.OCEAN_FLOOR);
+
+        // Try the level nearer the death location first
+        boolean surfaceFirst = Math.abs(surfaceY + 1 - originY) <= Math.abs(floorY + 1 - originY);
+        int firstY = surfaceFirst ? surfaceY : floorY;
+        int secondY = surfaceFirst ? floorY : surfaceY;
+        if (testColumnLevel(view, x, firstY, z)) {
+            return true;
+        }
+        return secondY != firstY && testColumnLevel(view, x, secondY, z);
+    }
+
+    private boolean testColumnLevel(BlockView view, int x, int height, int z) {
+        if (height == Integer.MIN_VALUE) {
+            return false;
+        }
+
+        int y = height + 1;
+        // Levels next to the death level were already covered, directly in the first ring
+        // and by the mask beyond it
+        int distance = Math.max(Math.abs(x - originX), Math.abs(z - originZ));
+        if (Math.abs(y - originY) <= 1 && (distance <= 1 || !aboveSurface)) {
+            return false;
+        }
+
+        long pos = BlockPos.pack(x, y, z);
+        return LocationFinder.isValidChestLocation(view, pos) && accept(pos);
+    }
+
+    private boolean accept(long pos) {
+        if (!visitor.test(pos)) {
+            return false;
+        }
+        found = true;
+        phase = Phase.DONE;
+        return true;
+    }
+
+    /**
+     * Gets the X offset of a position on the perimeter of a ring, walking its four sides in turn
+     */
+    private static int ringX(int ring, int i) {
+        if (ring == 0) {
+            return 0;
+        }
+        int side = i / (2 * ring);
+        int offset = i % (2 * ring);
+        return switch (side) {
+            case 0 -> -ring + offset;
+            case 1 -> ring;
+            case 2 -> ring - offset;
+            default -> -ring;
+        };
+    }
+
+    /**
+     * Gets the Z offset of a position on the perimeter of a ring
+     */
+    private static int ringZ(int ring, int i) {
+        if (ring == 0) {
+            return 0;
+        }
+        int side = i / (2 * ring);
+        int offset = i % (2 * ring);
+        return switch (side) {
+            case 0 -> -ring;
+            case 1 -> -ring + offset;
+            case 2 -> ring;
+            default -> ring - offset;
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package io.mckenz.friendlydeathchest.service;
+
+import io.mckenz.friendlydeathchest.utils.BlockPos;
+import org.bukkit.Material;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bitmask of every valid chest position in a search volume.
+ * <p>
+ * Each block of the volume is read once and classified into three per-layer bitmasks, one
+ * bit per block along X: replaceable, solid and chest. A position is valid when it is
+ * replaceable, the block below is solid and none of its four horizontal neighbours is a
+ * chest, so whole rows are evaluated with a few shifted AND/ANDNOT operations on 64-bit
+ * words instead of asking the same questions block by block. Rows can be read over several
+ * ticks.
+ */
+final class PlacementMask {
+    /** Layers read: two below the lowest candidate layer up to the highest candidate layer */
+    private static final int LAYERS = 4;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int width;
+    private final int words;
+    private final long[] replaceable;
+    private final long[] solid;
+    private final long[] chest;
+    private long[] valid;
+    private int rowsRead;
+
+    /**
+     * Creates an empty mask for every candidate within a radius of a position, at the same
+     * level, one block above and one block below. Fill it with {@link #readRows(BlockView, BooleanSupplier)}.
+     *
+     * @param originX The centre X coordinate
+     * @param originY The centre Y coordinate
+     * @param originZ The centre Z coordinate
+     * @param radius The horizontal search radius
+     */
+    PlacementMask(int originX, int originY, int originZ, int radius) {
+        // One extra block on every side for the neighbouring chest check
+        this.width = 2 * radius + 3;
+        this.words = (width + 63) >>> 6;
+        this.minX = originX - radius - 1;
+        this.minY = originY - 2;
+        this.minZ = originZ - radius - 1;
+        this.replaceable = new long[LAYERS * width * words];
+        this.solid = new long[LAYERS * width * words];
+        this.chest = new long[LAYERS * width * words];
+    }
+
+    /**
+     * Reads and classifies rows of the volume until every row is read or time is up. The
+     * valid positions are evaluated once the last row is read.
+     *
+     * @param view The blocks to read
+     * @param timeUp Checked after each row; returning true pauses reading
+     * @return true once the mask is complete
+     */
+    boolean readRows(BlockView view, BooleanSupplier timeUp) {
+        int rows = LAYERS * width;
+        while (rowsRead < rows) {
+            int layer = rowsRead / width;
+            int dz = rowsRead % width;
+            int row = rowsRead * words;
+            for (int dx = 0; dx < width; dx++) {
+                Material type = view.getType(minX + dx, minY + layer, minZ + dz);
+                if (type == null) {
+                    continue;
+                }
+                int word = row + (dx >>> 6);
+                long bit = 1L << dx;
+                if (LocationFinder.isReplaceable(type)) {
+                    replaceable[word] |= bit;
+                }
+                if (type.isSolid()) {
+                    solid[word] |= bit;
+                }
+                if (type == Material.CHEST) {
+                    chest[word] |= bit;
+                }
+            }
+            rowsRead++;
+            if (rowsRead < rows && timeUp.getAsBoolean()) {
+                return false;
+            }
+        }
+
+        if (valid == null) {
+            evaluate();
+        }
+        return true;
+    }
+
+    private void evaluate() {
+        // Candidate layers are 1..3; layer 0 only supports layer 1
+        valid = new long[(LAYERS - 1) * width * words];
+        for (int layer = 1; layer < LAYERS; layer++) {
+            for (int dz = 1; dz < width - 1; dz++) {
+                int row = (layer * width + dz) * words;
+                int below = row - width * words;
+                int north = row - words;
+                int south = row + words;
+                int out = ((layer - 1) * width + dz) * words;
+                for (int w = 0; w < words; w++) {
+                    // Chest to the west (bit - 1) or east (bit + 1), carrying across words
+                    long west = chest[row + w] << 1 | (w > 0 ? chest[row + w - 1] >>> 63 : 0);
+                    long east = chest[row + w] >>> 1 | (w < words - 1 ? chest[row + w + 1] << 63 : 0);
+                    long nearChest = west | east | chest[north + w] | chest[south + w];
+                    valid[out + w] = replaceable[row + w] & solid[below + w] & ~nearChest;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a packed position is valid
+     *
+     * @param pos The packed block position
+     * @return true if a chest may be placed there
+     */
+    boolean isValid(long pos) {
+        return isValid(BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+    }
+
+    /**
+     * Checks whether a position is valid. Positions outside the candidate volume are not,
+     * and neither is any position before the mask is complete.
+     *
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return true if a chest may be placed there
+     */
+    boolean isValid(int x, int y, int z) {
+        int dx = x - minX;
+        int dz = z - minZ;
+        int layer = y - minY - 1;
+        if (valid == null || dx < 1 || dx >= width - 1 || dz < 1 || dz >= width - 1 || layer < 0 || layer >= LAYERS - 1) {
+            return false;
+        }
+        return (valid[(layer * width + dz) * words + (dx >>> 6)] & (1L << dx)) != 0;
+    }
+}
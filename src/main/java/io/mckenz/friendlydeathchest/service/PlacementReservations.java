@@ -0,0 +1,187 @@
+package io.mckenz.friendlydeathchest.service;
+
+import io.mckenz.friendlydeathchest.utils.BlockPos;
+import io.mckenz.friendlydeathchest.utils.LongObjectHashMap;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.HeightMap;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Chest positions claimed by location searches during the current tick, together with the
+ * blocks and chunk snapshots those searches read. Main thread only.
+ * <p>
+ * Claimed positions read as chests, so a search started after another one in the same tick
+ * skips the claimed spot and its neighbours without waiting for the chest to be placed.
+ * Block reads and snapshots are shared by every search in the tick. Everything is dropped
+ * at the start of the next tick, so a claim only protects a chest that is placed in the tick
+ * its search finished; the death chest pipeline does that, and checks the spot against the
+ * live world again before placing it.
+ */
+public class PlacementReservations {
+    private final JavaPlugin plugin;
+    private final Map<UUID, LongObjectHashMap<Material>> claimed = new HashMap<>();
+    private final Map<UUID, LongObjectHashMap<Material>> blocks = new HashMap<>();
+    private final Map<UUID, Map<Long, ChunkSnapshot>> snapshots = new HashMap<>();
+    private boolean clearScheduled;
+
+    /**
+     * Creates a new PlacementReservations
+     *
+     * @param plugin The plugin instance
+     */
+    public PlacementReservations(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Claims a chest position for the rest of the tick
+     *
+     * @param world The world
+     * @param pos The packed block position
+     */
+    public void claim(World world, long pos) {
+        claims(world).put(pos, Material.CHEST);
+        scheduleClear();
+    }
+
+    /**
+     * Gets a view of the live world that shares block reads with the other searches this
+     * tick and shows claimed positions as chests
+     *
+     * @param world The world
+     * @return The view
+     */
+    public BlockView cachedView(World world) {
+        scheduleClear();
+        LongObjectHashMap<Material> cache = blocks.computeIfAbsent(world.getUID(), uid -> new LongObjectHashMap<>());
+        return new ClaimedBlockView(claims(world), new CachingBlockView(new WorldBlockView(world), cache));
+    }
+
+    /**
+     * Gets a view that shows the positions claimed so far as chests over another view.
+     * The claims are copied, so the result can be read from any thread.
+     *
+     * @param world The world
+     * @param view The underlying view
+     * @return The view
+     */
+    public BlockView claimsOver(World world, BlockView view) {
+        LongObjectHashMap<Material> copy = new LongObjectHashMap<>();
+        claims(world).forEach(copy::put);
+        return new ClaimedBlockView(copy, view);
+    }
+
+    /**
+     * Captures chunk snapshots for a block area, reusing the ones taken this tick
+     *
+     * @param world The world
+     * @param minX The minimum block X coordinate
+     * @param minZ The minimum block Z coordinate
+     * @param maxX The maximum block X coordinate
+     * @param maxZ The maximum block Z coordinate
+     * @return The captured view
+     */
+    public SnapshotBlockView capture(World world, int minX, int minZ, int maxX, int maxZ) {
+        scheduleClear();
+        return SnapshotBlockView.capture(world, minX, minZ, maxX, maxZ,
+            snapshots.computeIfAbsent(world.getUID(), uid -> new HashMap<>()));
+    }
+
+    /**
+     * Gets the live claims of a world, so views built before a claim still see it
+     */
+    private LongObjectHashMap<Material> claims(World world) {
+        return claimed.computeIfAbsent(world.getUID(), uid -> new LongObjectHashMap<>());
+    }
+
+    private void scheduleClear() {
+        if (clearScheduled) {
+            return;
+        }
+        clearScheduled = true;
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            // Views still held by running searches share these maps, so empty them as well
+            claimed.values().forEach(LongObjectHashMap::clear);
+            claimed.clear();
+            blocks.clear();
+            snapshots.clear();
+            clearScheduled = false;
+        });
+    }
+
+    /**
+     * Shows claimed positions as chests over another view
+     */
+    private static final class ClaimedBlockView implements BlockView {
+        private final LongObjectHashMap<Material> claims;
+        private final BlockView view;
+
+        private ClaimedBlockView(LongObjectHashMap<Material> claims, BlockView view) {
+            this.claims = claims;
+            this.view = view;
+        }
+
+        @Override
+        public Material getType(int x, int y, int z) {
+            if (!claims.isEmpty()) {
+                Material claim = claims.get(BlockPos.pack(x, y, z));
+                if (claim != null) {
+                    return claim;
+                }
+            }
+            return view.getType(x, y, z);
+        }
+
+        @Override
+        public int getHighestBlockY(int x, int z, HeightMap heightMap) {
+            return view.getHighestBlockY(x, z, heightMap);
+        }
+
+        @Override
+        public int getLightLevel(int x, int y, int z) {
+            return view.getLightLevel(x, y, z);
+        }
+    }
+
+    /**
+     * Remembers every available block read from another view
+     */
+    private static final class CachingBlockView implements BlockView {
+        private final BlockView view;
+        private final LongObjectHashMap<Material> cache;
+
+        private CachingBlockView(BlockView view, LongObjectHashMap<Material> cache) {
+            this.view = view;
+            this.cache = cache;
+        }
+
+        @Override
+        public Material getType(int x, int y, int z) {
+            long pos = BlockPos.pack(x, y, z);
+            Material type = cache.get(pos);
+            if (type == null) {
+                type = view.getType(x, y, z);
+                if (type != null) {
+                    cache.put(pos, type);
+                }
+            }
+            return type;
+        }
+
+        @Override
+        public int getHighestBlockY(int x, int z, HeightMap heightMap) {
+            return view.getHighestBlockY(x, z, heightMap);
+        }
+
+        @Override
+        public int getLightLevel(int x, int y, int z) {
+            return view.getLightLevel(x, y, z);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package io.mckenz.friendlydeathchest.service;
+
+import io.mckenz.friendlydeathchest.config.ConfigManager;
+import io.mckenz.friendlydeathchest.utils.BlockPos;
+import org.bukkit.Material;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Ranks valid chest positions by a weighted score instead of taking the first one found.
+ * <p>
+ * Lower scores are better. A position scores for its straight-line distance from the death
+ * location, for hazards around it (lava, fire, cactus and the like next to it, or blocks
+ * that fall onto it from above), for being enclosed so the player would have to dig to reach
+ * it, and for darkness. Scoring only reads the view, so candidates are scored in parallel
+ * when the view is an immutable snapshot.
+ */
+final class PlacementScorer {
+    private final double distanceWeight;
+    private final double hazardWeight;
+    private final double reachabilityWeight;
+    private final double lightWeight;
+
+    /**
+     * Creates a scorer with the configured weights
+     *
+     * @param config The configuration manager
+     */
+    PlacementScorer(ConfigManager config) {
+        this.distanceWeight = config.getPlacementDistanceWeight();
+        this.hazardWeight = config.getPlacementHazardWeight();
+        this.reachabilityWeight = config.getPlacementReachabilityWeight();
+        this.lightWeight = config.getPlacementLightWeight();
+    }
+
+    /**
+     * Orders candidates from best to worst score. Equal scores keep their search order.
+     *
+     * @param view The blocks to read; must be safe to read from several threads
+     * @param candidates The packed candidate positions, in search order
+     * @param originX The death X coordinate
+     * @param originY The death Y coordinate
+     * @param originZ The death Z coordinate
+     * @return The candidates, best first
+     */
+    long[] rank(BlockView view, long[] candidates, int originX, int originY, int originZ) {
+        double[] scores = new double[candidates.length];
+        IntStream.range(0, candidates.length).parallel()
+            .forEach(i -> scores[i] = score(view, candidates[i], originX, originY, originZ));
+
+        return IntStream.range(0, candidates.length)
+            .boxed()
+            .sorted(Comparator.comparingDouble(i -> scores[i]))
+            .mapToLong(i -> candidates[i])
+            .toArray();
+    }
+
+    /**
+     * Scores one candidate
+     *
+     * @param view The blocks to read
+     * @param pos The packed candidate position
+     * @param originX The death X coordinate
+     * @param originY The death Y coordinate
+     * @param originZ The death Z coordinate
+     * @return The score, lower is better
+     */
+    double score(BlockView view, long pos, int originX, int originY, int originZ) {
+        int x = BlockPos.unpackX(pos);
+        int y = BlockPos.unpackY(pos);
+        int z = BlockPos.unpackZ(pos);
+
+        double dx = x - originX;
+        double dy = y - originY;
+        double dz = z - originZ;
+        double score = distanceWeight * Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+        if (hazardWeight != 0) {
+            score += hazardWeight * countHazards(view, x, y, z);
+        }
+        if (reachabilityWeight != 0 && isEnclosed(view, x, y, z)) {
+            score += reachabilityWeight;
+        }
+        if (lightWeight != 0) {
+            int light = view.getLightLevel(x, y, z);
+            if (light >= 0) {
+                score += lightWeight * (15 - light) / 15.0;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Counts hazardous blocks in the 3x3x3 cube around a position, plus falling blocks in
+     * the two blocks above it
+     */
+    private static int countHazards(BlockView view, int x, int y, int z) {
+        int hazards = 0;
+        for (int ox = -1; ox <= 1; ox++) {
+            for (int oy = -1; oy <= 1; oy++) {
+                for (int oz = -1; oz <= 1; oz++) {
+                    if ((ox | oy | oz) != 0 && isHazard(view.getType(x + ox, y + oy, z + oz))) {
+                        hazards++;
+                    }
+                }
+            }
+        }
+
+        for (int oy = 1; oy <= 2; oy++) {
+            Material above = view.getType(x, y + oy, z);
+            if (above != null && (above.hasGravity() || above == Material.POINTED_DRIPSTONE)) {
+                hazards++;
+            }
+        }
+        return hazards;
+    }
+
+    private static boolean isHazard(Material type) {
+        if (type == null) {
+            return false;
+        }
+        return switch (type) {
+            case LAVA, FIRE, SOUL_FIRE, MAGMA_BLOCK, CACTUS, CAMPFIRE, SOUL_CAMPFIRE,
+                 SWEET_BERRY_BUSH, POWDER_SNOW -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Checks whether every side of a position except the bottom is blocked, so the player
+     * could only reach the chest by digging
+     */
+    private static boolean isEnclosed(BlockView view, int x, int y, int z) {
+        return isBlocked(view.getType(x, y + 1, z))
+            && isBlocked(view.getType(x + 1, y, z))
+            && isBlocked(view.getType(x - 1, y, z))
+            && isBlocked(view.getType(x, y, z + 1))
+            && isBlocked(view.getType(x, y, z - 1));
+    }
+
+    private static boolean isBlocked(Material type) {
+        // Unknown blocks count as open rather than penalising chunk borders
+        return type != null && type.isSolid();
+    }
+}
@@ -0,0 +1,149 @@
+package io.mckenz.friendlydeathchest.service;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.HeightMap;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Block view over chunk snapshots captured on the main thread. Immutable once captured,
+ * so it can be read from any thread.
+ * <p>
+ * Column heights are captured for the {@link #COLUMN_HEIGHTMAPS} only, since snapshots do
+ * not carry the world's heightmaps.
+ */
+public class SnapshotBlockView implements BlockView {
+    /** Heightmaps captured for every column of the area */
+    public static final HeightMap[] COLUMN_HEIGHTMAPS = {HeightMap.MOTION_BLOCKING_NO_LEAVES, HeightMap.OCEAN_FLOOR};
+
+    private final Map<Long, ChunkSnapshot> snapshots;
+    private final Map<HeightMap, int[]> columnHeights;
+    private final int minX;
+    private final int minZ;
+    private final int width;
+    private final int depth;
+    private final int minHeight;
+    private final int maxHeight;
+
+    private SnapshotBlockView(Map<Long, ChunkSnapshot> snapshots, Map<HeightMap, int[]> columnHeights,
+                              int minX, int minZ, int width, int depth, int minHeight, int maxHeight) {
+        this.snapshots = snapshots;
+        this.columnHeights = columnHeights;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.width = width;
+        this.depth = depth;
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Captures snapshots of every loaded chunk overlapping a block area. Chunks that are not
+     * loaded are left out rather than loaded. Must be called on the main thread.
+     *
+     * @param world The world
+     * @param minX The minimum block X coordinate
+     * @param minZ The minimum block Z coordinate
+     * @param maxX The maximum block X coordinate
+     * @param maxZ The maximum block Z coordinate
+     * @return The captured view
+     */
+    public static SnapshotBlockView capture(World world, int minX, int minZ, int maxX, int maxZ) {
+        return capture(world, minX, minZ, maxX, maxZ, new HashMap<>());
+    }
+
+    /**
+     * Captures snapshots of every loaded chunk overlapping a block area, reusing snapshots
+     * already taken this tick. Must be called on the main thread.
+     *
+     * @param world The world
+     * @param minX The minimum block X coordinate
+     * @param minZ The minimum block Z coordinate
+     * @param maxX The maximum block X coordinate
+     * @param maxZ The maximum block Z coordinate
+     * @param shared Snapshots of this world taken earlier in the tick, keyed by chunk; new ones are added
+     * @return The captured view
+     */
+    public static SnapshotBlockView capture(World world, int minX, int minZ, int maxX, int maxZ,
+                                            Map<Long, ChunkSnapshot> shared) {
+        Map<Long, ChunkSnapshot> snapshots = new HashMap<>();
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                long key = chunkKey(chunkX, chunkZ);
+                ChunkSnapshot snapshot = shared.get(key);
+                if (snapshot == null && world.isChunkLoaded(chunkX, chunkZ)) {
+                    snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+                    shared.put(key, snapshot);
+                }
+                if (snapshot != null) {
+                    snapshots.put(key, snapshot);
+                }
+            }
+        }
+
+        // Heightmap lookups are cheap on the main thread, so summarise every column up front
+        int width = maxX - minX + 1;
+        int depth = maxZ - minZ + 1;
+        Map<HeightMap, int[]> columnHeights = new EnumMap<>(HeightMap.class);
+        for (HeightMap heightMap : COLUMN_HEIGHTMAPS) {
+            int[] heights = new int[width * depth];
+            Arrays.fill(heights, Integer.MIN_VALUE);
+            for (int dx = 0; dx < width; dx++) {
+                for (int dz = 0; dz < depth; dz++) {
+                    int x = minX + dx;
+                    int z = minZ + dz;
+                    if (snapshots.containsKey(chunkKey(x >> 4, z >> 4))) {
+                        heights[dx * depth + dz] = world.getHighestBlockYAt(x, z, heightMap);
+                    }
+                }
+            }
+            columnHeights.put(heightMap, heights);
+        }
+
+        return new SnapshotBlockView(snapshots, columnHeights, minX, minZ, width, depth,
+            world.getMinHeight(), world.getMaxHeight());
+    }
+
+    @Override
+    public Material getType(int x, int y, int z) {
+        if (y < minHeight || y >= maxHeight) {
+            return null;
+        }
+
+        ChunkSnapshot snapshot = snapshots.get(chunkKey(x >> 4, z >> 4));
+        return snapshot != null ? snapshot.getBlockType(x & 15, y, z & 15) : null;
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z) {
+        if (y < minHeight || y >= maxHeight) {
+            return -1;
+        }
+
+        ChunkSnapshot snapshot = snapshots.get(chunkKey(x >> 4, z >> 4));
+        if (snapshot == null) {
+            return -1;
+        }
+        return Math.max(snapshot.getBlockSkyLight(x & 15, y, z & 15), snapshot.getBlockEmittedLight(x & 15, y, z & 15));
+    }
+
+    @Override
+    public int getHighestBlockY(int x, int z, HeightMap heightMap) {
+        int[] heights = columnHeights.get(heightMap);
+        int dx = x - minX;
+        int dz = z - minZ;
+        if (heights == null || dx < 0 || dx >= width || dz < 0 || dz >= depth) {
+            return Integer.MIN_VALUE;
+        }
+        return heights[dx * depth + dz];
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
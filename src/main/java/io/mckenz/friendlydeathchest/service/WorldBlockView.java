@@ -0,0 +1,61 @@
+package io.mckenz.friendlydeathchest.service;
+
+import org.bukkit.HeightMap;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+/**
+ * Block view over the live world. Main thread only. Blocks in chunks that are not loaded
+ * are reported as unavailable instead of loading the chunk.
+ */
+public class WorldBlockView implements BlockView {
+    private final World world;
+    private final int minHeight;
+    private final int maxHeight;
+
+    private long lastChunk = Long.MIN_VALUE;
+    private boolean lastChunkLoaded;
+
+    /**
+     * Creates a new WorldBlockView
+     *
+     * @param world The world to read
+     */
+    public WorldBlockView(World world) {
+        this.world = world;
+        this.minHeight = world.getMinHeight();
+        this.maxHeight = world.getMaxHeight();
+    }
+
+    @Override
+    public Material getType(int x, int y, int z) {
+        if (y < minHeight || y >= maxHeight) {
+            return null;
+        }
+
+        return isChunkLoaded(x, z) ? world.getBlockAt(x, y, z).getType() : null;
+    }
+
+    @Override
+    public int getHighestBlockY(int x, int z, HeightMap heightMap) {
+        return isChunkLoaded(x, z) ? world.getHighestBlockYAt(x, z, heightMap) : Integer.MIN_VALUE;
+    }
+
+    @Override
+    public int getLightLevel(int x, int y, int z) {
+        if (y < minHeight || y >= maxHeight || !isChunkLoaded(x, z)) {
+            return -1;
+        }
+        return world.getBlockAt(x, y, z).getLightLevel();
+    }
+
+    private boolean isChunkLoaded(int x, int z) {
+        // Searches read neighbouring blocks, so the chunk rarely changes between reads
+        long chunk = ((long) (x >> 4) << 32) | ((z >> 4) & 0xFFFFFFFFL);
+        if (chunk != lastChunk) {
+            lastChunk = chunk;
+            lastChunkLoaded = world.isChunkLoaded(x >> 4, z >> 4);
+        }
+        return lastChunkLoaded;
+    }
+}
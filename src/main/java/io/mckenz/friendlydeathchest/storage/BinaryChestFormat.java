@@ -0,0 +1,207 @@
+package io.mckenz.friendlydeathchest.storage;
+
+import io.mckenz.friendlydeathchest.model.StoredChest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Versioned binary snapshot format for the death chest registry.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int    magic "FDCS"
+ * short  version
+ * short  record size in bytes
+ * long   journal generation covered by the snapshot
+ * int    world count, followed by that many (ushort length, UTF-8 bytes) world names
+ * int    record count, followed by that many fixed-width records:
+ *        int world index, int x, int y, int z,
+ *        long owner UUID (most significant), long owner UUID (least significant),
+ *        int experience, long expiry time
+ * </pre>
+ * World names are stored once in the table, and records are fixed width so the file can be
+ * decoded in parallel without parsing.
+ */
+public final class BinaryChestFormat {
+    private static final int MAGIC = 0x46444353; // "FDCS"
+    private static final short VERSION = 1;
+    private static final int RECORD_SIZE = 4 * 4 + 8 * 2 + 4 + 8;
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    private BinaryChestFormat() {
+    }
+
+    /**
+     * A decoded snapshot
+     */
+    public static final class Snapshot {
+        private final long generation;
+        private final List<StoredChest> chests;
+
+        private Snapshot(long generation, List<StoredChest> chests) {
+            this.generation = generation;
+            this.chests = chests;
+        }
+
+        /**
+         * Gets the journal generation this snapshot covers
+         *
+         * @return The journal generation
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Gets the chests in this snapshot
+         *
+         * @return The chests
+         */
+        public List<StoredChest> getChests() {
+            return chests;
+        }
+    }
+
+    /**
+     * Encodes a snapshot
+     *
+     * @param chests The chests to encode
+     * @param generation The journal generation the snapshot covers
+     * @return The encoded bytes
+     * @throws IOException If encoding fails
+     */
+    public static byte[] encode(Collection<StoredChest> chests, long generation) throws IOException {
+        Map<String, Integer> worlds = new LinkedHashMap<>();
+        for (StoredChest chest : chests) {
+            worlds.putIfAbsent(chest.getWorldName(), worlds.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + chests.size() * RECORD_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(RECORD_SIZE);
+        out.writeLong(generation);
+
+        out.writeInt(worlds.size());
+        for (String worldName : worlds.keySet()) {
+            byte[] name = worldName.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+        }
+
+        out.writeInt(chests.size());
+        for (StoredChest chest : chests) {
+            out.writeInt(worlds.get(chest.getWorldName()));
+            out.writeInt(chest.getX());
+            out.writeInt(chest.getY());
+            out.writeInt(chest.getZ());
+            out.writeLong(chest.getOwnerUUID().getMostSignificantBits());
+            out.writeLong(chest.getOwnerUUID().getLeastSignificantBits());
+            out.writeInt(chest.getExperience());
+            out.writeLong(chest.getExpiryTime());
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a snapshot file into memory. Large files are decoded in parallel. The file is not
+     * memory-mapped, since a mapping outlives the channel until it is garbage collected and,
+     * on Windows, stops the file from being replaced.
+     *
+     * @param file The snapshot file
+     * @return The decoded snapshot
+     * @throws IOException If the file cannot be read or is not a valid snapshot
+     */
+    public static Snapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("snapshot too large: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("snapshot truncated while reading");
+                }
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Decodes a snapshot from a buffer
+     *
+     * @param buffer The buffer positioned at the start of the snapshot
+     * @return The decoded snapshot
+     * @throws IOException If the buffer does not hold a valid snapshot
+     */
+    public static Snapshot decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not a death chest snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            if (buffer.getShort() != RECORD_SIZE) {
+                throw new IOException("unexpected record size");
+            }
+            long generation = buffer.getLong();
+
+            String[] worlds = new String[buffer.getInt()];
+            for (int i = 0; i < worlds.length; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                worlds[i] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            int count = buffer.getInt();
+            int base = buffer.position();
+            if (count < 0 || (long) base + (long) count * RECORD_SIZE > buffer.limit()) {
+                throw new IOException("snapshot is truncated");
+            }
+
+            StoredChest[] chests = new StoredChest[count];
+            IntStream indices = IntStream.range(0, count);
+            if (count >= PARALLEL_THRESHOLD) {
+                indices = indices.parallel();
+            }
+            // Absolute reads only, so the shared buffer's position is never touched
+            indices.forEach(i -> chests[i] = decodeRecord(buffer, base + i * RECORD_SIZE, worlds));
+
+            return new Snapshot(generation, Arrays.asList(chests));
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private static StoredChest decodeRecord(ByteBuffer buffer, int offset, String[] worlds) {
+        String worldName = worlds[buffer.getInt(offset)];
+        int x = buffer.getInt(offset + 4);
+        int y = buffer.getInt(offset + 8);
+        int z = buffer.getInt(offset + 12);
+        UUID owner = new UUID(buffer.getLong(offset + 16), buffer.getLong(offset + 24));
+        int experience = buffer.getInt(offset + 32);
+        long expiryTime = buffer.getLong(offset + 36);
+        return new StoredChest(worldName, x, y, z, owner, experience, expiryTime);
+    }
+}
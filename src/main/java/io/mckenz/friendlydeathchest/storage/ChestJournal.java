@@ -0,0 +1,642 @@
+package io.mckenz.friendlydeathchest.storage;
+
+import io.mckenz.friendlydeathchest.config.ConfigManager;
+import io.mckenz.friendlydeathchest.model.StoredChest;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal for the death chest registry.
+ * <p>
+ * Every mutation is written to the current journal file as a small checksummed record.
+ * Records are buffered until {@link #flush()} so a batch of changes costs a single write.
+ * Once enough records have accumulated, the regions touched since the last compaction are
+ * rewritten in the background ({@link RegionFiles}) and older journal files are deleted.
+ * On startup the region files are loaded and all journal files written after them are
+ * replayed on top.
+ * <p>
+ * Records are encoded on the main thread, but all file access after {@link #load()} happens
+ * on the {@link PersistenceWorker}, so the server thread never waits on the disk.
+ */
+public class ChestJournal {
+    private static final String SNAPSHOT_FILE = "chests.dat";
+    private static final String LEGACY_SNAPSHOT_FILE = "chests.yml";
+    private static final Pattern JOURNAL_FILE = Pattern.compile("chests-(\\d+)\\.journal");
+
+    private static final byte RECORD_CREATE = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final byte RECORD_EXPIRE = 3;
+    private static final byte RECORD_XP_CLAIMED = 4;
+
+    private final JavaPlugin plugin;
+    private final ConfigManager config;
+    private final File dataFolder;
+    private final PersistenceWorker worker;
+    private final RegionFiles regionFiles;
+    // Regions with records since the last compaction
+    private final Set<RegionId> dirtyRegions = new HashSet<>();
+
+    // Only touched on the I/O thread once loading has finished
+    private FileChannel channel;
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(256);
+    private long generation;
+    private int recordsSinceCompaction;
+    private boolean unsynced;
+
+    /**
+     * Creates a new ChestJournal
+     *
+     * @param plugin The plugin instance
+     * @param config The configuration manager
+     * @param worker The worker that performs the file I/O
+     */
+    public ChestJournal(JavaPlugin plugin, ConfigManager config, PersistenceWorker worker) {
+        this.plugin = plugin;
+        this.config = config;
+        this.dataFolder = plugin.getDataFolder();
+        this.worker = worker;
+        this.regionFiles = new RegionFiles(dataFolder);
+    }
+
+    /**
+     * Loads the region files, replays the journal on top of them and opens a fresh journal file
+     *
+     * @return The recovered chests, keyed by {@link #key(String, int, int, int)}
+     */
+    public Map<String, StoredChest> load() {
+        Map<String, StoredChest> chests = new LinkedHashMap<>();
+        long latestGeneration = recover(chests, true);
+
+        // Never append to a file that may end in a torn record
+        generation = latestGeneration + 1;
+        openJournal(generation);
+
+        return chests;
+    }
+
+    /**
+     * Reads the stored chests for importing them into another backend. Nothing is written:
+     * no journal file is opened, and the single-file storage of older versions is read in
+     * place instead of being converted into region files.
+     *
+     * @return The stored chests, keyed by {@link #key(String, int, int, int)}
+     */
+    public Map<String, StoredChest> read() {
+        Map<String, StoredChest> chests = new LinkedHashMap<>();
+        recover(chests, false);
+        // This journal never writes, so the replayed regions need no compaction
+        dirtyRegions.clear();
+        recordsSinceCompaction = 0;
+        return chests;
+    }
+
+    /**
+     * Loads the region files and replays the journal on top of them
+     *
+     * @param migrate Whether older single-file storage may be converted into region files
+     * @return The generation of the latest journal file
+     */
+    private long recover(Map<String, StoredChest> chests, boolean migrate) {
+        long snapshotGeneration = loadSnapshot(chests, migrate);
+
+        // Replay every journal written since the snapshot, oldest first
+        long latestGeneration = snapshotGeneration;
+        int replayed = 0;
+        for (Map.Entry<Long, File> entry : listJournals().entrySet()) {
+            latestGeneration = Math.max(latestGeneration, entry.getKey());
+            if (entry.getKey() >= snapshotGeneration) {
+                replayed += replay(entry.getValue(), chests);
+            }
+        }
+
+        if (config.isDebugEnabled() && replayed > 0) {
+            plugin.getLogger().info("Replayed " + replayed + " death chest journal records.");
+        }
+
+        recordsSinceCompaction = replayed;
+        return latestGeneration;
+    }
+
+    /**
+     * Records the current state of a chest, replacing any earlier state on replay
+     *
+     * @param chest The chest
+     */
+    public void appendCreate(StoredChest chest) {
+        append(RECORD_CREATE, chest.getWorldName(), chest.getX(), chest.getY(), chest.getZ(), chest);
+    }
+
+    /**
+     * Records a chest that was emptied or broken
+     *
+     * @param worldName The world name
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     */
+    public void appendRemove(String worldName, int x, int y, int z) {
+        append(RECORD_REMOVE, worldName, x, y, z, null);
+    }
+
+    /**
+     * Records a chest that was removed because its lifetime ran out
+     *
+     * @param worldName The world name
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     */
+    public void appendExpire(String worldName, int x, int y, int z) {
+        append(RECORD_EXPIRE, worldName, x, y, z, null);
+    }
+
+    /**
+     * Queues all buffered records for writing as one append
+     */
+    public void flush() {
+        if (pending.size() == 0) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        pending.reset();
+        unsynced = true;
+        worker.execute(() -> {
+            if (channel == null) {
+                return;
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+    }
+
+    /**
+     * Forces everything written since the last sync to disk. Does nothing if no records were written.
+     */
+    public void sync() {
+        flush();
+        if (!unsynced) {
+            return;
+        }
+
+        unsynced = false;
+        worker.execute(() -> {
+            if (channel != null) {
+                channel.force(false);
+            }
+        });
+    }
+
+    /**
+     * Compacts the journal in the background once enough records have been written
+     *
+     * @param regionContents Supplies the current contents of a region, called on the main thread
+     */
+    public void compactIfNeeded(Function<RegionId, List<StoredChest>> regionContents) {
+        if (recordsSinceCompaction < config.getJournalCompactionThreshold()) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        int regionCount = dirtyRegions.size();
+        compact(regionContents).whenComplete((count, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Failed to save death chests: " + error.getMessage());
+            } else if (config.isDebugEnabled()) {
+                plugin.getLogger().info("Compacted death chest journal: saved " + count + " chests in "
+                    + regionCount + " regions in " + (System.nanoTime() - startTime) / 1_000_000 + "ms.");
+            }
+        });
+    }
+
+    /**
+     * Rewrites every region changed since the last compaction on the I/O thread and starts a
+     * new journal file. Region contents are copied immediately, so the caller may keep
+     * modifying its state.
+     *
+     * @param regionContents Supplies the current contents of a region
+     * @return A future completed with the number of chests written once the regions are on disk
+     */
+    public CompletableFuture<Integer> compact(Function<RegionId, List<StoredChest>> regionContents) {
+        // Everything written so far is covered by the rewritten regions
+        flush();
+        Map<RegionId, List<StoredChest>> regions = takeDirtyRegions(regionContents);
+        long snapshotGeneration = rollJournal();
+        CompletableFuture<Integer> future = worker.submit(() -> writeRegions(regions, snapshotGeneration));
+        future.whenComplete((count, error) -> {
+            // Try these regions again with the next compaction; the journals stay until then
+            if (error != null && plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTask(plugin, () -> dirtyRegions.addAll(regions.keySet()));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Rewrites the changed regions a final time and closes the journal
+     *
+     * @param regionContents Supplies the current contents of a region
+     * @return A future completed with the number of chests written once the regions are on disk
+     */
+    public CompletableFuture<Integer> close(Function<RegionId, List<StoredChest>> regionContents) {
+        flush();
+        Map<RegionId, List<StoredChest>> regions = takeDirtyRegions(regionContents);
+        long snapshotGeneration = ++generation;
+        return worker.submit(() -> {
+            closeChannel();
+            return writeRegions(regions, snapshotGeneration);
+        });
+    }
+
+    /**
+     * Copies the contents of every dirty region and clears the dirty set
+     */
+    private Map<RegionId, List<StoredChest>> takeDirtyRegions(Function<RegionId, List<StoredChest>> regionContents) {
+        Map<RegionId, List<StoredChest>> regions = new HashMap<>();
+        for (RegionId region : dirtyRegions) {
+            regions.put(region, List.copyOf(regionContents.apply(region)));
+        }
+        dirtyRegions.clear();
+        return regions;
+    }
+
+    /**
+     * Encodes a record on the calling thread and adds it to the pending batch
+     */
+    private void append(byte type, String worldName, int x, int y, int z, StoredChest chest) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            out.writeUTF(worldName);
+            out.writeInt(x);
+            out.writeInt(y);
+            out.writeInt(z);
+            if (chest != null) {
+                out.writeLong(chest.getOwnerUUID().getMostSignificantBits());
+                out.writeLong(chest.getOwnerUUID().getLeastSignificantBits());
+                out.writeInt(chest.getExperience());
+                out.writeLong(chest.getExpiryTime());
+            }
+            byte[] payload = bytes.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            DataOutputStream record = new DataOutputStream(pending);
+            record.writeInt(payload.length);
+            record.writeInt((int) crc.getValue());
+            record.write(payload);
+            recordsSinceCompaction++;
+            dirtyRegions.add(RegionId.ofBlock(worldName, x, z));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to encode death chest journal record: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replays a single journal file into the given state
+     *
+     * @return The number of records applied
+     */
+    private int replay(File file, Map<String, StoredChest> chests) {
+        int applied = 0;
+        try (InputStream stream = Files.newInputStream(file.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                int checksum = in.readInt();
+                if (length <= 0 || length > 4096) {
+                    throw new EOFException("bad record length " + length);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    throw new EOFException("checksum mismatch");
+                }
+
+                apply(payload, chests);
+                applied++;
+            }
+        } catch (EOFException e) {
+            // A torn record can only be the last one written before a crash
+            plugin.getLogger().warning("Ignoring incomplete record at the end of " + file.getName() + " (" + e.getMessage() + ")");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read death chest journal " + file.getName() + ": " + e.getMessage());
+        }
+        return applied;
+    }
+
+    /**
+     * Applies a single decoded record
+     */
+    private void apply(byte[] payload, Map<String, StoredChest> chests) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        String worldName = in.readUTF();
+        int x = in.readInt();
+        int y = in.readInt();
+        int z = in.readInt();
+        String key = key(worldName, x, y, z);
+        // Replayed changes have to reach the region files before their journal is deleted
+        dirtyRegions.add(RegionId.ofBlock(worldName, x, z));
+
+        switch (type) {
+            case RECORD_CREATE -> {
+                UUID owner = new UUID(in.readLong(), in.readLong());
+                int experience = in.readInt();
+                long expiryTime = in.readLong();
+                chests.put(key, new StoredChest(worldName, x, y, z, owner, experience, expiryTime));
+            }
+            case RECORD_REMOVE, RECORD_EXPIRE -> chests.remove(key);
+            // Written by earlier versions, claimed experience is now part of the upserted state
+            case RECORD_XP_CLAIMED -> {
+                StoredChest chest = chests.get(key);
+                if (chest != null) {
+                    chests.put(key, chest.withExperience(0));
+                }
+            }
+            default -> throw new IOException("unknown record type " + type);
+        }
+    }
+
+    /**
+     * Loads the region files, converting the storage of older versions first if needed
+     *
+     * @param migrate Whether older storage may be converted; otherwise it is only read
+     * @return The journal generation the region files cover
+     */
+    private long loadSnapshot(Map<String, StoredChest> chests, boolean migrate) {
+        if (!regionFiles.exists() && !migrate) {
+            return readSingleFileSnapshot(chests);
+        }
+        if (!regionFiles.exists()) {
+            importSingleFileSnapshot();
+        }
+        if (!regionFiles.exists()) {
+            return 0;
+        }
+
+        try {
+            long startTime = System.nanoTime();
+            long snapshotGeneration = regionFiles.load(chests);
+            if (config.isDebugEnabled()) {
+                plugin.getLogger().info("Read " + chests.size() + " death chests from region files in "
+                    + (System.nanoTime() - startTime) / 1_000_000 + "ms.");
+            }
+            return snapshotGeneration;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to load death chests from region files: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Splits the single-file storage of older versions (chests.dat, or chests.yml before that)
+     * into region files. The old file is kept with an .imported suffix afterwards.
+     */
+    private void importSingleFileSnapshot() {
+        try {
+            SingleFileSnapshot snapshot = openSingleFileSnapshot();
+            if (snapshot == null) {
+                return;
+            }
+            File sourceFile = snapshot.sourceFile;
+            List<StoredChest> chests = snapshot.chests;
+            long snapshotGeneration = snapshot.generation;
+
+            Map<RegionId, List<StoredChest>> regions = new HashMap<>();
+            for (StoredChest chest : chests) {
+                regions.computeIfAbsent(RegionId.ofBlock(chest.getWorldName(), chest.getX(), chest.getZ()),
+                    region -> new ArrayList<>()).add(chest);
+            }
+
+            regionFiles.write(regions, snapshotGeneration);
+            Files.move(sourceFile.toPath(), new File(dataFolder, sourceFile.getName() + ".imported").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+            plugin.getLogger().info("Imported " + chests.size() + " death chests from " + sourceFile.getName()
+                + " into " + regions.size() + " region files.");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to import death chests from single-file storage: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the single-file storage of older versions without converting it
+     *
+     * @return The journal generation the file covers, 0 if there is none
+     */
+    private long readSingleFileSnapshot(Map<String, StoredChest> chests) {
+        try {
+            SingleFileSnapshot snapshot = openSingleFileSnapshot();
+            if (snapshot == null) {
+                return 0;
+            }
+            for (StoredChest chest : snapshot.chests) {
+                chests.put(key(chest.getWorldName(), chest.getX(), chest.getY(), chest.getZ()), chest);
+            }
+            return snapshot.generation;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read death chests from single-file storage: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Reads chests.dat, or chests.yml before that
+     *
+     * @return The snapshot, or null if neither file exists
+     */
+    private SingleFileSnapshot openSingleFileSnapshot() throws IOException {
+        File snapshotFile = new File(dataFolder, SNAPSHOT_FILE);
+        if (snapshotFile.exists()) {
+            BinaryChestFormat.Snapshot snapshot = BinaryChestFormat.read(snapshotFile.toPath());
+            return new SingleFileSnapshot(snapshotFile, snapshot.getChests(), snapshot.getGeneration());
+        }
+
+        File legacyFile = new File(dataFolder, LEGACY_SNAPSHOT_FILE);
+        if (legacyFile.exists()) {
+            YamlConfiguration storage = YamlConfiguration.loadConfiguration(legacyFile);
+            return new SingleFileSnapshot(legacyFile, readLegacySnapshot(storage), storage.getLong("journal-generation", 0));
+        }
+        return null;
+    }
+
+    /**
+     * Reads the chests.yml file written by older versions
+     *
+     * @param storage The loaded YAML file
+     * @return The stored chests
+     */
+    private List<StoredChest> readLegacySnapshot(YamlConfiguration storage) {
+        List<StoredChest> chests = new ArrayList<>();
+        ConfigurationSection chestsSection = storage.getConfigurationSection("chests");
+        if (chestsSection == null) {
+            return chests;
+        }
+
+        for (String key : chestsSection.getKeys(false)) {
+            try {
+                ConfigurationSection chestSection = chestsSection.getConfigurationSection(key);
+                if (chestSection == null) {
+                    continue;
+                }
+
+                chests.add(new StoredChest(
+                    chestSection.getString("world"),
+                    chestSection.getInt("x"),
+                    chestSection.getInt("y"),
+                    chestSection.getInt("z"),
+                    UUID.fromString(chestSection.getString("owner")),
+                    chestSection.getInt("experience", 0),
+                    chestSection.getLong("expiry-time", 0)));
+            } catch (Exception e) {
+                plugin.getLogger().warning("Failed to load death chest: " + e.getMessage());
+            }
+        }
+        return chests;
+    }
+
+    /**
+     * Rewrites the given regions and deletes the journals they now cover. Runs on the I/O thread.
+     *
+     * @return The number of chests written
+     */
+    private int writeRegions(Map<RegionId, List<StoredChest>> regions, long snapshotGeneration) throws IOException {
+        int count = regionFiles.write(regions, snapshotGeneration);
+
+        // The region files now cover every older journal
+        for (Map.Entry<Long, File> entry : listJournals().entrySet()) {
+            if (entry.getKey() < snapshotGeneration && !entry.getValue().delete()) {
+                plugin.getLogger().warning("Failed to delete old journal " + entry.getValue().getName());
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Closes the current journal file and starts the next generation
+     *
+     * @return The generation of the new journal file
+     */
+    private long rollJournal() {
+        long newGeneration = ++generation;
+        recordsSinceCompaction = 0;
+        worker.execute(() -> {
+            closeChannel();
+            openJournal(newGeneration);
+        });
+        return newGeneration;
+    }
+
+    private void openJournal(long journalGeneration) {
+        try {
+            channel = FileChannel.open(new File(dataFolder, "chests-" + journalGeneration + ".journal").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            channel = null;
+            plugin.getLogger().severe("Failed to open death chest journal: " + e.getMessage());
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to close death chest journal: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Lists journal files in the data folder ordered by generation
+     */
+    private Map<Long, File> listJournals() {
+        Map<Long, File> journals = new TreeMap<>();
+        File[] files = dataFolder.listFiles();
+        if (files == null) {
+            return journals;
+        }
+        for (File file : files) {
+            Matcher matcher = JOURNAL_FILE.matcher(file.getName());
+            if (matcher.matches()) {
+                journals.put(Long.parseLong(matcher.group(1)), file);
+            }
+        }
+        return journals;
+    }
+
+    /**
+     * Builds the map key used for a chest position
+     *
+     * @param worldName The world name
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return The key
+     */
+    static String key(String worldName, int x, int y, int z) {
+        return worldName + ";" + x + ";" + y + ";" + z;
+    }
+
+    /**
+     * The contents of the single-file storage of older versions
+     */
+    private static final class SingleFileSnapshot {
+        private final File sourceFile;
+        private final List<StoredChest> chests;
+        private final long generation;
+
+        private SingleFileSnapshot(File sourceFile, List<StoredChest> chests, long generation) {
+            this.sourceFile = sourceFile;
+            this.chests = chests;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.mckenz.friendlydeathchest.storage;
+
+import io.mckenz.friendlydeathchest.model.StoredChest;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persistent storage backend for death chests.
+ * <p>
+ * Mutations are called on the main thread and may be buffered until {@link #flush()}.
+ * Queries complete asynchronously, so implementations are free to answer them from an index
+ * on their own thread instead of keeping every chest in memory. Queries are also called on
+ * the main thread and see every mutation made before them, buffered or not.
+ */
+public interface ChestStore {
+
+    /**
+     * Loads every stored chest. Called once on the main thread while the plugin enables.
+     *
+     * @return The stored chests
+     */
+    Collection<StoredChest> load();
+
+    /**
+     * Inserts a chest or replaces the stored chest at the same position
+     *
+     * @param chest The chest
+     */
+    void upsert(StoredChest chest);
+
+    /**
+     * Deletes the chest at a position
+     *
+     * @param worldName The world name
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @param expired true if the chest is deleted because its lifetime ran out
+     */
+    void delete(String worldName, int x, int y, int z, boolean expired);
+
+    /**
+     * Hands all buffered mutations to the storage thread as one batch
+     */
+    void flush();
+
+    /**
+     * Flushes and makes every mutation so far durable. Does no I/O if nothing changed.
+     */
+    void sync();
+
+    /**
+     * Finds all chests owned by a player
+     *
+     * @param ownerUUID The owner's UUID
+     * @return A future completed with the owner's chests
+     */
+    CompletableFuture<List<StoredChest>> findByOwner(UUID ownerUUID);
+
+    /**
+     * Finds all chests in a chunk
+     *
+     * @param worldName The world name
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return A future completed with the chests in the chunk
+     */
+    CompletableFuture<List<StoredChest>> findInChunk(String worldName, int chunkX, int chunkZ);
+
+    /**
+     * Finds all chests expiring in a time range. Chests without expiry are never returned.
+     *
+     * @param from The start of the range in milliseconds, inclusive
+     * @param to The end of the range in milliseconds, exclusive
+     * @return A future completed with the matching chests
+     */
+    CompletableFuture<List<StoredChest>> findExpiringBetween(long from, long to);
+
+    /**
+     * Flushes everything and releases the backend
+     *
+     * @return A future completed with the number of chests stored once everything is written
+     */
+    CompletableFuture<Integer> close();
+}
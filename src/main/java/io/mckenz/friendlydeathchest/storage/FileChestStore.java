@@ -0,0 +1,139 @@
+package io.mckenz.friendlydeathchest.storage;
+
+import io.mckenz.friendlydeathchest.config.ConfigManager;
+import io.mckenz.friendlydeathchest.model.StoredChest;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * File backend: region files plus an append-only journal, see {@link ChestJournal}.
+ * <p>
+ * Keeps the stored state in memory, grouped by region, so compaction can copy just the
+ * regions that changed, and answers queries from that state.
+ */
+public class FileChestStore implements ChestStore {
+    private final ChestJournal journal;
+    private final Map<RegionId, Map<String, StoredChest>> regions = new HashMap<>();
+
+    /**
+     * Creates a new FileChestStore
+     *
+     * @param plugin The plugin instance
+     * @param config The configuration manager
+     * @param worker The worker that performs the file I/O
+     */
+    public FileChestStore(JavaPlugin plugin, ConfigManager config, PersistenceWorker worker) {
+        this.journal = new ChestJournal(plugin, config, worker);
+    }
+
+    @Override
+    public Collection<StoredChest> load() {
+        Map<String, StoredChest> chests = journal.load();
+        for (Map.Entry<String, StoredChest> entry : chests.entrySet()) {
+            StoredChest chest = entry.getValue();
+            region(chest.getWorldName(), chest.getX(), chest.getZ()).put(entry.getKey(), chest);
+        }
+        return new ArrayList<>(chests.values());
+    }
+
+    @Override
+    public void upsert(StoredChest chest) {
+        region(chest.getWorldName(), chest.getX(), chest.getZ())
+            .put(ChestJournal.key(chest.getWorldName(), chest.getX(), chest.getY(), chest.getZ()), chest);
+        journal.appendCreate(chest);
+    }
+
+    @Override
+    public void delete(String worldName, int x, int y, int z, boolean expired) {
+        region(worldName, x, z).remove(ChestJournal.key(worldName, x, y, z));
+        if (expired) {
+            journal.appendExpire(worldName, x, y, z);
+        } else {
+            journal.appendRemove(worldName, x, y, z);
+        }
+    }
+
+    @Override
+    public void flush() {
+        journal.flush();
+    }
+
+    @Override
+    public void sync() {
+        journal.sync();
+        journal.compactIfNeeded(this::regionContents);
+    }
+
+    @Override
+    public CompletableFuture<List<StoredChest>> findByOwner(UUID ownerUUID) {
+        return CompletableFuture.completedFuture(find(chest -> chest.getOwnerUUID().equals(ownerUUID)));
+    }
+
+    @Override
+    public CompletableFuture<List<StoredChest>> findInChunk(String worldName, int chunkX, int chunkZ) {
+        List<StoredChest> result = new ArrayList<>();
+        Map<String, StoredChest> region = regions.get(new RegionId(worldName, chunkX >> 5, chunkZ >> 5));
+        if (region != null) {
+            for (StoredChest chest : region.values()) {
+                if ((chest.getX() >> 4) == chunkX && (chest.getZ() >> 4) == chunkZ) {
+                    result.add(chest);
+                }
+            }
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    @Override
+    public CompletableFuture<List<StoredChest>> findExpiringBetween(long from, long to) {
+        return CompletableFuture.completedFuture(find(chest -> chest.getExpiryTime() > 0
+            && chest.getExpiryTime() >= from && chest.getExpiryTime() < to));
+    }
+
+    @Override
+    public CompletableFuture<Integer> close() {
+        return journal.close(this::regionContents);
+    }
+
+    /**
+     * Gets the chests of a region to write. Expired chests are kept: a chest that expired in
+     * an unloaded chunk leaves storage through {@link #delete(String, int, int, int, boolean)}
+     * once its chunk loads and the block is removed.
+     */
+    private List<StoredChest> regionContents(RegionId regionId) {
+        Map<String, StoredChest> region = regions.get(regionId);
+        if (region == null) {
+            return List.of();
+        }
+
+        List<StoredChest> result = new ArrayList<>(region.values());
+        if (region.isEmpty()) {
+            regions.remove(regionId);
+        }
+        return result;
+    }
+
+    private Map<String, StoredChest> region(String worldName, int x, int z) {
+        return regions.computeIfAbsent(RegionId.ofBlock(worldName, x, z), region -> new LinkedHashMap<>());
+    }
+
+    private List<StoredChest> find(Predicate<StoredChest> filter) {
+        List<StoredChest> result = new ArrayList<>();
+        for (Map<String, StoredChest> region : regions.values()) {
+            for (StoredChest chest : region.values()) {
+                if (filter.test(chest)) {
+                    result.add(chest);
+                }
+            }
+        }
+        return result;
+    }
+}
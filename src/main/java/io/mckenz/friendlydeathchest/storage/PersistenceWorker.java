@@ -0,0 +1,91 @@
+package io.mckenz.friendlydeathchest.storage;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Single dedicated thread that performs all death chest storage I/O.
+ * <p>
+ * Tasks run strictly in submission order, so a journal append submitted before a snapshot
+ * is always on disk before that snapshot is written.
+ */
+public class PersistenceWorker {
+    private final Logger logger;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new PersistenceWorker
+     *
+     * @param logger The logger to report failures to
+     */
+    public PersistenceWorker(Logger logger) {
+        this.logger = logger;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FriendlyDeathChest-IO");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a task on the I/O thread
+     *
+     * @param task The task to run
+     * @param <T> The result type
+     * @return A future completed with the task's result, or exceptionally if it failed
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Queues a task on the I/O thread, logging rather than returning failures
+     *
+     * @param task The task to run
+     */
+    public void execute(IoTask task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.severe("Death chest storage task failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stops accepting tasks and waits a bounded time for queued ones to finish
+     *
+     * @param timeoutSeconds The maximum number of seconds to wait
+     * @return true if every queued task finished in time
+     */
+    public boolean shutdown(long timeoutSeconds) {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * A storage task that may throw checked exceptions
+     */
+    @FunctionalInterface
+    public interface IoTask {
+        void run() throws Exception;
+    }
+}
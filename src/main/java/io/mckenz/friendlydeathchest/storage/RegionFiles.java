@@ -0,0 +1,138 @@
+package io.mckenz.friendlydeathchest.storage;
+
+import io.mckenz.friendlydeathchest.model.StoredChest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Death chest snapshot split into one file per world and 32x32 chunk region, like the
+ * world's own region files:
+ * <pre>
+ * chests/manifest.dat                 journal generation covered by the region files
+ * chests/&lt;world&gt;/r.&lt;x&gt;.&lt;z&gt;.dat     {@link BinaryChestFormat} snapshot of one region
+ * </pre>
+ * Each region file is replaced atomically on its own, so saving only rewrites the regions
+ * that changed. Deleting a world's directory drops all of its chests.
+ */
+public class RegionFiles {
+    private static final String DIRECTORY = "chests";
+    private static final String MANIFEST_FILE = "manifest.dat";
+    private static final int MANIFEST_MAGIC = 0x4644434D; // "FDCM"
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.-?\\d+\\.-?\\d+\\.dat");
+
+    private final File directory;
+
+    /**
+     * Creates a new RegionFiles
+     *
+     * @param dataFolder The plugin data folder
+     */
+    public RegionFiles(File dataFolder) {
+        this.directory = new File(dataFolder, DIRECTORY);
+    }
+
+    /**
+     * Checks whether region storage has been written before
+     *
+     * @return true if the manifest exists
+     */
+    public boolean exists() {
+        return new File(directory, MANIFEST_FILE).exists();
+    }
+
+    /**
+     * Reads every region file
+     *
+     * @param chests The map to add the chests to, keyed by {@link ChestJournal#key(String, int, int, int)}
+     * @return The journal generation covered by the region files
+     * @throws IOException If the manifest cannot be read
+     */
+    public long load(Map<String, StoredChest> chests) throws IOException {
+        long generation = readManifest();
+
+        File[] worlds = directory.listFiles(File::isDirectory);
+        if (worlds == null) {
+            return generation;
+        }
+        for (File world : worlds) {
+            File[] regions = world.listFiles((dir, name) -> REGION_FILE.matcher(name).matches());
+            if (regions == null) {
+                continue;
+            }
+            for (File region : regions) {
+                try {
+                    for (StoredChest chest : BinaryChestFormat.read(region.toPath()).getChests()) {
+                        chests.put(ChestJournal.key(chest.getWorldName(), chest.getX(), chest.getY(), chest.getZ()), chest);
+                    }
+                } catch (IOException e) {
+                    throw new IOException(world.getName() + "/" + region.getName() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Rewrites the given regions, then records the generation they cover in the manifest.
+     * A region with no chests has its file deleted.
+     *
+     * @param regions The contents of every region to rewrite
+     * @param generation The journal generation the files cover
+     * @return The number of chests written
+     * @throws IOException If a file could not be written
+     */
+    public int write(Map<RegionId, List<StoredChest>> regions, long generation) throws IOException {
+        int count = 0;
+        for (Map.Entry<RegionId, List<StoredChest>> entry : regions.entrySet()) {
+            RegionId region = entry.getKey();
+            File worldDirectory = new File(directory, region.getWorldName());
+            File file = new File(worldDirectory, "r." + region.getRegionX() + "." + region.getRegionZ() + ".dat");
+
+            if (entry.getValue().isEmpty()) {
+                Files.deleteIfExists(file.toPath());
+                continue;
+            }
+
+            Files.createDirectories(worldDirectory.toPath());
+            AtomicFiles.write(file.toPath(), BinaryChestFormat.encode(entry.getValue(), generation));
+            count += entry.getValue().size();
+        }
+
+        // Only once every region is on disk may the journals before this generation go
+        writeManifest(generation);
+        return count;
+    }
+
+    private long readManifest() throws IOException {
+        File manifest = new File(directory, MANIFEST_FILE);
+        if (!manifest.exists()) {
+            return 0;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(manifest.toPath())))) {
+            if (in.readInt() != MANIFEST_MAGIC) {
+                throw new IOException("not a death chest manifest");
+            }
+            return in.readLong();
+        }
+    }
+
+    private void writeManifest(long generation) throws IOException {
+        Files.createDirectories(directory.toPath());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MANIFEST_MAGIC);
+        out.writeLong(generation);
+        out.flush();
+        AtomicFiles.write(new File(directory, MANIFEST_FILE).toPath(), bytes.toByteArray());
+    }
+}
@@ -0,0 +1,70 @@
+package io.mckenz.friendlydeathchest.storage;
+
+import java.util.Objects;
+
+/**
+ * Identifies a 32x32 chunk region of a world, the unit death chests are stored in
+ */
+public final class RegionId {
+    private final String worldName;
+    private final int regionX;
+    private final int regionZ;
+
+    /**
+     * Creates a new region id
+     *
+     * @param worldName The world name
+     * @param regionX The region X coordinate
+     * @param regionZ The region Z coordinate
+     */
+    public RegionId(String worldName, int regionX, int regionZ) {
+        this.worldName = worldName;
+        this.regionX = regionX;
+        this.regionZ = regionZ;
+    }
+
+    /**
+     * Gets the region containing a block
+     *
+     * @param worldName The world name
+     * @param x The block X coordinate
+     * @param z The block Z coordinate
+     * @return The region id
+     */
+    public static RegionId ofBlock(String worldName, int x, int z) {
+        return new RegionId(worldName, x >> 9, z >> 9);
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public int getRegionX() {
+        return regionX;
+    }
+
+    public int getRegionZ() {
+        return regionZ;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RegionId other)) {
+            return false;
+        }
+        return regionX == other.regionX && regionZ == other.regionZ && worldName.equals(other.worldName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(worldName, regionX, regionZ);
+    }
+
+    @Override
+    public String toString() {
+        return worldName + "/r." + regionX + "." + regionZ;
+    }
+}
@@ -0,0 +1,327 @@
+package io.mckenz.friendlydeathchest.storage;
+
+import io.mckenz.friendlydeathchest.config.ConfigManager;
+import io.mckenz.friendlydeathchest.model.StoredChest;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Embedded SQLite backend using the JDBC driver bundled with the server.
+ * <p>
+ * Chests are indexed by owner, chunk and expiry time, so queries run against the database
+ * instead of an in-memory copy. Mutations are coalesced per position and written as one
+ * batched transaction on each flush. The connection is only ever used on the I/O thread.
+ * <p>
+ * When the database is created, the chests of the file backend are imported, so switching
+ * storage-type from FILE to SQLITE keeps every tracked chest.
+ */
+public class SqliteChestStore implements ChestStore {
+    private static final String COLUMNS = "world, x, y, z, owner, experience, expiry_time";
+    private static final String UPSERT = "INSERT OR REPLACE INTO death_chests "
+        + "(world, x, y, z, chunk_x, chunk_z, owner, experience, expiry_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE = "DELETE FROM death_chests WHERE world = ? AND x = ? AND y = ? AND z = ?";
+
+    private final JavaPlugin plugin;
+    private final ConfigManager config;
+    private final PersistenceWorker worker;
+    private final File databaseFile;
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+
+    // Only touched on the I/O thread
+    private Connection connection;
+
+    private boolean unsynced;
+
+    /**
+     * Creates a new SqliteChestStore
+     *
+     * @param plugin The plugin instance
+     * @param config The configuration manager
+     * @param worker The worker that runs all statements
+     */
+    public SqliteChestStore(JavaPlugin plugin, ConfigManager config, PersistenceWorker worker) {
+        this.plugin = plugin;
+        this.config = config;
+        this.worker = worker;
+        this.databaseFile = new File(plugin.getDataFolder(), "chests.db");
+    }
+
+    /**
+     * Opens the database and creates the schema if needed, importing the file backend's chests
+     * into a new database. Blocks until done.
+     *
+     * @throws SQLException If the driver is missing or the database cannot be opened
+     */
+    public void open() throws SQLException {
+        await(worker.submit(() -> {
+            try {
+                Class.forName("org.sqlite.JDBC");
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("this server does not provide the SQLite JDBC driver (org.sqlite.JDBC)", e);
+            }
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+            }
+
+            // The table and the import are committed together, so an interrupted import is
+            // retried on the next start
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                boolean newDatabase;
+                try (ResultSet result = statement.executeQuery(
+                        "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'death_chests'")) {
+                    newDatabase = !result.next();
+                }
+
+                statement.execute("CREATE TABLE IF NOT EXISTS death_chests ("
+                    + "world TEXT NOT NULL, x INTEGER NOT NULL, y INTEGER NOT NULL, z INTEGER NOT NULL, "
+                    + "chunk_x INTEGER NOT NULL, chunk_z INTEGER NOT NULL, "
+                    + "owner TEXT NOT NULL, experience INTEGER NOT NULL, expiry_time INTEGER NOT NULL, "
+                    + "PRIMARY KEY (world, x, y, z))");
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_death_chests_owner ON death_chests (owner)");
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_death_chests_chunk "
+                    + "ON death_chests (world, chunk_x, chunk_z)");
+                statement.execute("CREATE INDEX IF NOT EXISTS idx_death_chests_expiry ON death_chests (expiry_time)");
+
+                if (newDatabase) {
+                    importFileStore();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Copies the chests stored by the file backend into the new database. The files are only
+     * read, never converted or renamed, so switching back to FILE finds them unchanged. Runs
+     * on the I/O thread inside the schema transaction.
+     */
+    private void importFileStore() throws SQLException {
+        Collection<StoredChest> chests = new ChestJournal(plugin, config, worker).read().values();
+        if (chests.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT)) {
+            for (StoredChest chest : chests) {
+                bindUpsert(upsert, chest);
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+        }
+        plugin.getLogger().info("Imported " + chests.size() + " death chests from file storage into " + databaseFile.getName() + ".");
+    }
+
+    @Override
+    public Collection<StoredChest> load() {
+        try {
+            return await(worker.submit(() -> query("SELECT " + COLUMNS + " FROM death_chests")));
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to load death chests from " + databaseFile.getName() + ": " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public void upsert(StoredChest chest) {
+        pending.put(ChestJournal.key(chest.getWorldName(), chest.getX(), chest.getY(), chest.getZ()),
+            new PendingWrite(chest.getWorldName(), chest.getX(), chest.getY(), chest.getZ(), chest));
+    }
+
+    @Override
+    public void delete(String worldName, int x, int y, int z, boolean expired) {
+        pending.put(ChestJournal.key(worldName, x, y, z), new PendingWrite(worldName, x, y, z, null));
+    }
+
+    @Override
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<PendingWrite> writes = new ArrayList<>(pending.values());
+        pending.clear();
+        unsynced = true;
+        worker.execute(() -> writeBatch(writes));
+    }
+
+    @Override
+    public void sync() {
+        flush();
+        if (!unsynced) {
+            return;
+        }
+
+        unsynced = false;
+        worker.execute(() -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA wal_checkpoint(PASSIVE)");
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<StoredChest>> findByOwner(UUID ownerUUID) {
+        // Queries run after every earlier write on the I/O thread
+        flush();
+        return worker.submit(() -> query("SELECT " + COLUMNS + " FROM death_chests WHERE owner = ?",
+            ownerUUID.toString()));
+    }
+
+    @Override
+    public CompletableFuture<List<StoredChest>> findInChunk(String worldName, int chunkX, int chunkZ) {
+        flush();
+        return worker.submit(() -> query("SELECT " + COLUMNS + " FROM death_chests "
+            + "WHERE world = ? AND chunk_x = ? AND chunk_z = ?", worldName, chunkX, chunkZ));
+    }
+
+    @Override
+    public CompletableFuture<List<StoredChest>> findExpiringBetween(long from, long to) {
+        flush();
+        return worker.submit(() -> query("SELECT " + COLUMNS + " FROM death_chests "
+            + "WHERE expiry_time > 0 AND expiry_time >= ? AND expiry_time < ?", from, to));
+    }
+
+    @Override
+    public CompletableFuture<Integer> close() {
+        flush();
+        return worker.submit(() -> {
+            int count;
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM death_chests")) {
+                count = result.next() ? result.getInt(1) : 0;
+            } finally {
+                connection.close();
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Writes a batch of coalesced mutations in a single transaction. Runs on the I/O thread.
+     */
+    private void writeBatch(List<PendingWrite> writes) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT);
+             PreparedStatement delete = connection.prepareStatement(DELETE)) {
+            for (PendingWrite write : writes) {
+                if (write.chest == null) {
+                    delete.setString(1, write.worldName);
+                    delete.setInt(2, write.x);
+                    delete.setInt(3, write.y);
+                    delete.setInt(4, write.z);
+                    delete.addBatch();
+                } else {
+                    bindUpsert(upsert, write.chest);
+                    upsert.addBatch();
+                }
+            }
+            upsert.executeBatch();
+            delete.executeBatch();
+            connection.commit();
+
+            if (config.isDebugEnabled()) {
+                plugin.getLogger().info("Wrote " + writes.size() + " death chest changes to " + databaseFile.getName() + ".");
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void bindUpsert(PreparedStatement upsert, StoredChest chest) throws SQLException {
+        upsert.setString(1, chest.getWorldName());
+        upsert.setInt(2, chest.getX());
+        upsert.setInt(3, chest.getY());
+        upsert.setInt(4, chest.getZ());
+        upsert.setInt(5, chest.getX() >> 4);
+        upsert.setInt(6, chest.getZ() >> 4);
+        upsert.setString(7, chest.getOwnerUUID().toString());
+        upsert.setInt(8, chest.getExperience());
+        upsert.setLong(9, chest.getExpiryTime());
+    }
+
+    /**
+     * Runs a chest query. Runs on the I/O thread.
+     */
+    private List<StoredChest> query(String sql, Object... parameters) throws SQLException {
+        List<StoredChest> chests = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    chests.add(new StoredChest(
+                        result.getString("world"),
+                        result.getInt("x"),
+                        result.getInt("y"),
+                        result.getInt("z"),
+                        UUID.fromString(result.getString("owner")),
+                        result.getInt("experience"),
+                        result.getLong("expiry_time")));
+                }
+            }
+        }
+        return chests;
+    }
+
+    /**
+     * Waits for a storage task, unwrapping its failure
+     */
+    private static <T> T await(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException(cause != null ? cause.getMessage() : e.getMessage(), cause);
+        }
+    }
+
+    /**
+     * A coalesced mutation waiting for the next flush; a null chest means delete
+     */
+    private static final class PendingWrite {
+        private final String worldName;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final StoredChest chest;
+
+        private PendingWrite(String worldName, int x, int y, int z, StoredChest chest) {
+            this.worldName = worldName;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.chest = chest;
+        }
+    }
+}
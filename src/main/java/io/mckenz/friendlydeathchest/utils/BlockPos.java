@@ -0,0 +1,53 @@
+package io.mckenz.friendlydeathchest.utils;
+
+/**
+ * Packs block coordinates into a single long, using the same layout as the game:
+ * 26 bits of X, 26 bits of Z and 12 bits of Y.
+ */
+public final class BlockPos {
+
+    private BlockPos() {
+    }
+
+    /**
+     * Packs block coordinates
+     *
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return The packed position
+     */
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * Gets the X coordinate of a packed position
+     *
+     * @param pos The packed position
+     * @return The block X coordinate
+     */
+    public static int unpackX(long pos) {
+        return (int) (pos >> 38);
+    }
+
+    /**
+     * Gets the Y coordinate of a packed position
+     *
+     * @param pos The packed position
+     * @return The block Y coordinate
+     */
+    public static int unpackY(long pos) {
+        return (int) (pos << 52 >> 52);
+    }
+
+    /**
+     * Gets the Z coordinate of a packed position
+     *
+     * @param pos The packed position
+     * @return The block Z coordinate
+     */
+    public static int unpackZ(long pos) {
+        return (int) (pos << 26 >> 38);
+    }
+}